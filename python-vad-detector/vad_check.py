@@ -51,5 +51,72 @@ def main():
         import traceback
         traceback.print_exc(file=sys.stderr)
 
+def main_shm(path):
+    """Serve frames from the shared ring file set up by VADChecker (vad.transport=shm).
+
+    Header: magic, slot count and frame size as int32, then the submitted sequence at
+    offset 16 (written by Java; -1 means exit) and the completed sequence at offset 24
+    (written only here). Frames follow at offset 64, then one decision bit per slot.
+
+    Python has no memory fence, so the frames, decision bits and sequences are read and
+    written with plain accesses. That is only safe where the hardware keeps stores in order
+    and loads in order (x86); anywhere else this refuses to run and the pipe must be used.
+    """
+    import mmap
+    import platform
+    import struct
+    import time
+
+    if platform.machine().lower() not in ("x86_64", "amd64", "i386", "i686", "x86"):
+        print(f"Shared-memory transport needs x86 memory ordering, not {platform.machine()}; "
+              "use vad.transport=pipe", file=sys.stderr)
+        sys.exit(1)
+
+    with open(path, "r+b") as f:
+        mm = mmap.mmap(f.fileno(), 0)
+    magic, slots, frame_bytes = struct.unpack_from("<iii", mm, 0)
+    if magic != 0x56414431:
+        print(f"Bad ring file magic: {magic:#x}", file=sys.stderr)
+        sys.exit(1)
+    data = 64
+    bitmap = data + slots * frame_bytes
+    parent = os.getppid()
+    completed = struct.unpack_from("<q", mm, 24)[0]
+    idle = 0
+
+    while True:
+        submitted = struct.unpack_from("<q", mm, 16)[0]
+        if submitted < 0:
+            break
+        if submitted == completed:
+            # Poll eagerly just after a batch, then settle into 1 ms naps between reads
+            idle += 1
+            if idle < 200:
+                time.sleep(0)
+            else:
+                time.sleep(0.001)
+                if idle % 1000 == 0 and os.getppid() != parent:
+                    print("Parent exited, stopping", file=sys.stderr)
+                    break
+            continue
+        idle = 0
+        while completed < submitted:
+            slot = completed % slots
+            offset = data + slot * frame_bytes
+            try:
+                speech = is_speech(mm[offset:offset + frame_bytes])
+            except Exception as e:
+                print(f"VAD processing error: {e}", file=sys.stderr)
+                speech = False
+            index = bitmap + slot // 8
+            bit = 1 << (slot % 8)
+            mm[index] = (mm[index] | bit) if speech else (mm[index] & ~bit)
+            completed += 1
+        struct.pack_into("<q", mm, 24, completed)
+    mm.close()
+
 if __name__ == "__main__":
-    main()
\ No newline at end of file
+    if len(sys.argv) == 3 and sys.argv[1] == "--shm":
+        main_shm(sys.argv[2])
+    else:
+        main()
\ No newline at end of file
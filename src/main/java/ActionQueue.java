@@ -0,0 +1,106 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Bounded hand-off of navigation actions from the key hook thread to a worker.
+ *
+ * The hook thread only enqueues, so a slow action never delays later key events. The
+ * worker drains everything queued so far and folds each run of moves in one direction into
+ * one {@link TranscriptBuffer#move(int)} and each run of slurps into one
+ * {@link TranscriptBuffer#slurpPrevious(int)}: ten quick MOVE_UP presses become a single
+ * move by ten and a single redraw. Opposite moves are not netted against each other, since
+ * a move clamped at either end of the list does not cancel out. Other actions run in order
+ * between the runs.
+ */
+public class ActionQueue {
+    private static final int CAPACITY = Integer.getInteger("navigation.queue.capacity", 64);
+
+    private final BlockingQueue<KeyBindingConfig.Action> queue = new ArrayBlockingQueue<>(CAPACITY);
+    private final TranscriptBuffer buffer;
+    private final Consumer<KeyBindingConfig.Action> executor;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    /**
+     * @param buffer Buffer that moves and slurps are applied to
+     * @param executor Runs every other action, on the worker thread
+     */
+    public ActionQueue(TranscriptBuffer buffer, Consumer<KeyBindingConfig.Action> executor) {
+        this.buffer = buffer;
+        this.executor = executor;
+        this.worker = new Thread(this::run, "navigation-actions");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Queues an action without blocking.
+     *
+     * @return false if the queue is full and the action was dropped
+     */
+    public boolean offer(KeyBindingConfig.Action action) {
+        return queue.offer(action);
+    }
+
+    public void close() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        List<KeyBindingConfig.Action> batch = new ArrayList<>(CAPACITY);
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch);
+            try {
+                apply(batch);
+            } catch (RuntimeException e) {
+                System.err.println("Error running navigation action: " + e.getMessage());
+            }
+            batch.clear();
+        }
+    }
+
+    private void apply(List<KeyBindingConfig.Action> batch) {
+        int i = 0;
+        while (i < batch.size()) {
+            KeyBindingConfig.Action action = batch.get(i);
+            PipelineEvents.HotkeyAction event = new PipelineEvents.HotkeyAction();
+            event.begin();
+            int first = i;
+            if (isMove(action)) {
+                int delta = 0;
+                for (; i < batch.size() && batch.get(i) == action; i++) {
+                    delta += action == KeyBindingConfig.Action.MOVE_UP ? -1 : 1;
+                }
+                buffer.move(delta);
+            } else if (action == KeyBindingConfig.Action.SLURP_PREVIOUS) {
+                int steps = 0;
+                for (; i < batch.size() && batch.get(i) == KeyBindingConfig.Action.SLURP_PREVIOUS; i++) {
+                    steps++;
+                }
+                buffer.slurpPrevious(steps);
+            } else {
+                executor.accept(action);
+                i++;
+            }
+            if (event.shouldCommit()) {
+                event.action = action.name();
+                event.presses = i - first;
+                event.batchSize = batch.size();
+                event.commit();
+            }
+        }
+    }
+
+    private static boolean isMove(KeyBindingConfig.Action action) {
+        return action == KeyBindingConfig.Action.MOVE_UP || action == KeyBindingConfig.Action.MOVE_DOWN;
+    }
+}
@@ -0,0 +1,228 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes transcripts and answers to local subscribers over a Unix domain socket.
+ *
+ * Every event is one frame: a 4-byte big-endian length followed by that many bytes of
+ * payload, which is a 1-byte event type, the 8-byte epoch millis it happened at, the
+ * 4-byte id of the answer it belongs to (0 for transcripts) and the UTF-8 text.
+ *
+ * Publishing only encodes the frame and queues it; one feed thread accepts subscribers
+ * and writes to them without blocking. Each subscriber may fall behind by up to
+ * {@code answer.feed.subscriber.max.bytes}; past that it is disconnected, so a stuck
+ * reader costs memory up to that bound and never holds up transcription or answers.
+ */
+public class AnswerFeed implements Closeable {
+    public static final byte TRANSCRIPT = 1;
+    public static final byte ANSWER_TOKEN = 2;
+    public static final byte ANSWER_COMPLETE = 3;
+    public static final byte ANSWER_ERROR = 4;
+    public static final int HEADER_BYTES = 1 + 8 + 4;
+
+    private static final int MAX_BACKLOG_BYTES = Integer.getInteger("answer.feed.subscriber.max.bytes", 1 << 20);
+    private static final int MAX_QUEUED = Integer.getInteger("answer.feed.queue.capacity", 4096);
+
+    /**
+     * A connected reader and the frames it has yet to receive.
+     */
+    private static final class Subscriber {
+        final SocketChannel channel;
+        final ArrayDeque<ByteBuffer> backlog = new ArrayDeque<>();
+        long backlogBytes = 0;
+
+        Subscriber(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private final Path path;
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final ConcurrentLinkedQueue<ByteBuffer> outbox = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger answerIds = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    // Feed thread state
+    private final List<Subscriber> subscribers = new ArrayList<>();
+
+    /**
+     * Binds the socket, replacing a stale socket file left by an earlier run, and starts the feed thread.
+     */
+    public AnswerFeed(Path path) throws IOException {
+        this.path = path;
+        Files.deleteIfExists(path);
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(path));
+        server.configureBlocking(false);
+        selector = Selector.open();
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        thread = new Thread(this::run, "answer-feed");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return A new id to tie an answer's token and completion events together
+     */
+    public int nextAnswerId() {
+        return answerIds.incrementAndGet();
+    }
+
+    /**
+     * Queues an event for every subscriber; never blocks.
+     */
+    public void publish(byte type, int answerId, String text) {
+        if (!running) {
+            return;
+        }
+        if (queued.incrementAndGet() > MAX_QUEUED) {
+            queued.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(4 + HEADER_BYTES + utf8.length);
+        frame.putInt(HEADER_BYTES + utf8.length).put(type).putLong(System.currentTimeMillis())
+            .putInt(answerId).put(utf8).flip();
+        outbox.offer(frame);
+        selector.wakeup();
+    }
+
+    /**
+     * @return Events not delivered because the feed thread was too far behind
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Files.deleteIfExists(path);
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                for (Iterator<SelectionKey> it = selector.selectedKeys().iterator(); it.hasNext(); ) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isWritable()) {
+                        flush((Subscriber) key.attachment());
+                    }
+                }
+                distribute();
+            }
+        } catch (IOException e) {
+            System.err.println("Answer feed stopped: " + e.getMessage());
+        } finally {
+            for (Subscriber subscriber : subscribers) {
+                closeQuietly(subscriber.channel);
+            }
+            closeQuietly(server);
+            closeQuietly(selector);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            Subscriber subscriber = new Subscriber(channel);
+            channel.register(selector, 0, subscriber);
+            subscribers.add(subscriber);
+        }
+    }
+
+    /**
+     * Hands every queued frame to every subscriber, sharing the frame's bytes between them.
+     */
+    private void distribute() {
+        ByteBuffer frame;
+        while ((frame = outbox.poll()) != null) {
+            queued.decrementAndGet();
+            for (int i = subscribers.size() - 1; i >= 0; i--) {
+                Subscriber subscriber = subscribers.get(i);
+                subscriber.backlog.add(frame.duplicate());
+                subscriber.backlogBytes += frame.remaining();
+                if (subscriber.backlogBytes > MAX_BACKLOG_BYTES) {
+                    System.err.println("Answer feed: dropping subscriber more than "
+                        + MAX_BACKLOG_BYTES + " bytes behind");
+                    disconnect(subscriber);
+                }
+            }
+        }
+        for (int i = subscribers.size() - 1; i >= 0; i--) {
+            flush(subscribers.get(i));
+        }
+    }
+
+    /**
+     * Writes as much of the backlog as the socket takes now and waits for OP_WRITE for the rest.
+     */
+    private void flush(Subscriber subscriber) {
+        if (!subscriber.channel.isOpen()) {
+            return;
+        }
+        try {
+            while (!subscriber.backlog.isEmpty()) {
+                ByteBuffer head = subscriber.backlog.peek();
+                subscriber.backlogBytes -= subscriber.channel.write(head);
+                if (head.hasRemaining()) {
+                    break;
+                }
+                subscriber.backlog.poll();
+            }
+            subscriber.channel.keyFor(selector).interestOps(subscriber.backlog.isEmpty() ? 0 : SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            disconnect(subscriber); // Reader went away
+        }
+    }
+
+    private void disconnect(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+        subscriber.backlog.clear();
+        closeQuietly(subscriber.channel);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Nothing more to do for a channel being thrown away
+        }
+    }
+}
@@ -0,0 +1,62 @@
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Prints the answer feed as it arrives; the structured replacement for tail -f ai_output.log.
+ *
+ * Usage: java AnswerFeedTail [socket path]   (default ai_answers.sock)
+ */
+public class AnswerFeedTail {
+    public static void main(String[] args) throws IOException {
+        String path = args.length > 0 ? args[0] : "ai_answers.sock";
+        SimpleDateFormat time = new SimpleDateFormat("HH:mm:ss");
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(Paths.get(path)));
+            ByteBuffer length = ByteBuffer.allocate(4);
+            while (readFully(channel, length.clear())) {
+                ByteBuffer frame = ByteBuffer.allocate(length.flip().getInt());
+                if (!readFully(channel, frame)) {
+                    break;
+                }
+                frame.flip();
+                byte type = frame.get();
+                long millis = frame.getLong();
+                int answerId = frame.getInt();
+                String text = StandardCharsets.UTF_8.decode(frame).toString();
+                System.out.println(time.format(new Date(millis)) + " " + label(type, answerId) + text);
+            }
+        }
+        System.out.println("Feed closed.");
+    }
+
+    private static String label(byte type, int answerId) {
+        switch (type) {
+            case AnswerFeed.TRANSCRIPT:
+                return "USER: ";
+            case AnswerFeed.ANSWER_TOKEN:
+                return "AI #" + answerId + ": ";
+            case AnswerFeed.ANSWER_COMPLETE:
+                return "AI #" + answerId + " done";
+            case AnswerFeed.ANSWER_ERROR:
+                return "AI #" + answerId + " failed: ";
+            default:
+                return "[" + type + "] ";
+        }
+    }
+
+    private static boolean readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
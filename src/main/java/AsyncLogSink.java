@@ -0,0 +1,264 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Log file writer that never makes the caller wait on the disk.
+ *
+ * Writes are copied into a lock-free queue and return at once; a single writer thread
+ * drains the queue every {@code ai.log.flush.ms} and appends everything pending with one
+ * gathered {@link FileChannel} write. When more than {@code ai.log.queue.capacity} writes
+ * are pending, new ones are dropped and counted instead of growing the heap; the count
+ * is written into the log once there is room again.
+ *
+ * The file is rotated when it passes {@code ai.log.max.bytes} or gets older than
+ * {@code ai.log.rotate.minutes}: {@code name} becomes {@code name.1}, {@code name.1}
+ * becomes {@code name.2}, and so on up to {@code ai.log.keep} files.
+ */
+public class AsyncLogSink extends OutputStream {
+    private static final int CAPACITY = Integer.getInteger("ai.log.queue.capacity", 8192);
+    private static final long FLUSH_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("ai.log.flush.ms", 50));
+    private static final long MAX_BYTES = Long.getLong("ai.log.max.bytes", 10L * 1024 * 1024);
+    private static final long ROTATE_MILLIS = TimeUnit.MINUTES.toMillis(Long.getLong("ai.log.rotate.minutes", 24 * 60));
+    private static final int KEEP = Integer.getInteger("ai.log.keep", 5);
+    private static final int BATCH = 256;
+
+    private final Path file;
+    private final ConcurrentLinkedQueue<byte[]> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    // Writer thread state
+    private FileChannel channel;
+    private long fileBytes;
+    private long openedMillis;
+    private long droppedReported = 0;
+
+    /**
+     * Opens (appending to) the log file and starts the writer thread.
+     */
+    public AsyncLogSink(Path file) throws IOException {
+        this.file = file;
+        open();
+        this.writer = new Thread(this::run, "log-writer-" + file.getFileName());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues one line; it is written whole, never interleaved with another thread's output.
+     */
+    public void println(String line) {
+        offer((line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * A print stream over this sink whose {@code println(String)} queues the whole line
+     * directly, without the stream's lock or a separate write for the line separator.
+     */
+    public PrintStream printStream() {
+        return new PrintStream(this, true, StandardCharsets.UTF_8) {
+            @Override
+            public void println(String line) {
+                AsyncLogSink.this.println(line);
+            }
+
+            @Override
+            public void println(Object value) {
+                AsyncLogSink.this.println(String.valueOf(value));
+            }
+        };
+    }
+
+    @Override
+    public void write(int b) {
+        offer(new byte[]{(byte) b});
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        if (len > 0) {
+            byte[] copy = new byte[len];
+            System.arraycopy(b, off, copy, 0, len);
+            offer(copy);
+        }
+    }
+
+    private void offer(byte[] event) {
+        if (!running) {
+            dropped.incrementAndGet();
+            return;
+        }
+        if (queued.incrementAndGet() > CAPACITY) {
+            queued.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        queue.offer(event);
+        if (queued.get() == CAPACITY / 2) {
+            LockSupport.unpark(writer); // Falling behind; don't wait out the flush interval
+        }
+    }
+
+    /**
+     * @return Writes waiting for the writer thread
+     */
+    public int getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * @return Writes discarded because the queue was full or the sink was closed
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return Bytes written to disk so far, across rotations
+     */
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * @return One line of queue and write counts, in the layout of the pipeline stage stats
+     */
+    public String stats() {
+        return String.format("%-10s queued %,d/%,d  dropped %,d  written %,d KB", file.getFileName(),
+            queued.get(), CAPACITY, dropped.get(), written.get() / 1024);
+    }
+
+    /**
+     * Nothing to do; the writer flushes on its own schedule and on close.
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Stops accepting writes, waits for the writer to drain the queue and closes the file.
+     * Safe to call more than once, from any thread.
+     */
+    @Override
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (dropped.get() > 0) {
+            System.err.println("Log " + file.getFileName() + ": " + dropped.get() + " writes dropped, "
+                + queued.get() + " still queued at close");
+        }
+    }
+
+    private void run() {
+        ByteBuffer[] batch = new ByteBuffer[BATCH + 1];
+        try {
+            while (true) {
+                boolean stopping = !running;
+                drain(batch);
+                if (stopping) {
+                    break;
+                }
+                LockSupport.parkNanos(this, FLUSH_NANOS);
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing " + file + ": " + e.getMessage());
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Writes everything queued so far, BATCH events per gathered write.
+     */
+    private void drain(ByteBuffer[] batch) throws IOException {
+        while (true) {
+            int count = 0;
+            int notices = 0;
+            long missed = dropped.get() - droppedReported;
+            if (missed > 0) {
+                notices = 1;
+                batch[count++] = ByteBuffer.wrap(("[log dropped " + missed + " writes]" + System.lineSeparator())
+                    .getBytes(StandardCharsets.UTF_8));
+                droppedReported += missed;
+            }
+            byte[] event;
+            while (count < batch.length && (event = queue.poll()) != null) {
+                batch[count++] = ByteBuffer.wrap(event);
+            }
+            if (count == 0) {
+                return;
+            }
+            long bytes = 0;
+            for (int i = 0; i < count; i++) {
+                bytes += batch[i].remaining();
+            }
+            if (fileBytes > 0 && (fileBytes + bytes > MAX_BYTES
+                    || System.currentTimeMillis() - openedMillis > ROTATE_MILLIS)) {
+                rotate();
+            }
+            long remaining = bytes;
+            while (remaining > 0) {
+                remaining -= channel.write(batch, 0, count);
+            }
+            fileBytes += bytes;
+            written.addAndGet(bytes);
+            queued.addAndGet(notices - count);
+            Arrays.fill(batch, 0, count, null);
+        }
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        fileBytes = channel.size();
+        openedMillis = System.currentTimeMillis();
+    }
+
+    private void rotate() throws IOException {
+        channel.close();
+        for (int i = KEEP - 1; i >= 1; i--) {
+            Path from = rotated(i);
+            if (Files.exists(from)) {
+                Files.move(from, rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (KEEP > 0) {
+            Files.move(file, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.deleteIfExists(file);
+        }
+        open();
+    }
+
+    private Path rotated(int generation) {
+        return file.resolveSibling(file.getFileName() + "." + generation);
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * One capture read on its way from the microphone to the recognizer.
+ *
+ * The capture loop fills in the audio and where it sits in the capture; the VAD stage
+ * fills in which of its 10 ms frames are to be streamed, and whether that was decided by
+ * the energy gate while the detector was down.
+ */
+public class AudioChunk {
+    private final byte[] data;
+    private final int length;
+    private final long captureByte;
+    private final long capturedMillis;
+    private final boolean[] send;
+    private boolean anySend = false;
+    private boolean fallback = false;
+
+    /**
+     * @param data Audio, owned by the chunk from here on
+     * @param length Bytes of audio in {@code data}
+     * @param captureByte Capture position of the first byte
+     * @param capturedMillis When the last byte was captured
+     */
+    public AudioChunk(byte[] data, int length, long captureByte, long capturedMillis) {
+        this.data = data;
+        this.length = length;
+        this.captureByte = captureByte;
+        this.capturedMillis = capturedMillis;
+        this.send = new boolean[getFrames()];
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public long getCaptureByte() {
+        return captureByte;
+    }
+
+    public long getCapturedMillis() {
+        return capturedMillis;
+    }
+
+    /**
+     * @return Number of VAD frames, counting a short trailing one
+     */
+    public int getFrames() {
+        return (length + Endpointer.FRAME_BYTES - 1) / Endpointer.FRAME_BYTES;
+    }
+
+    /**
+     * @return Per-frame stream decisions, filled in by the VAD stage
+     */
+    public boolean[] getSend() {
+        return send;
+    }
+
+    public boolean isAnySend() {
+        return anySend;
+    }
+
+    public void setAnySend(boolean anySend) {
+        this.anySend = anySend;
+    }
+
+    /**
+     * @return True if the frame decisions came from the energy gate rather than the detector
+     */
+    public boolean isFallback() {
+        return fallback;
+    }
+
+    public void setFallback(boolean fallback) {
+        this.fallback = fallback;
+    }
+}
@@ -0,0 +1,200 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * First-in, first-out spool of captured audio on disk, for speech heard while the recognizer
+ * is unreachable.
+ *
+ * Each run of audio is stored as a record of its capture position, capture time, length and
+ * bytes, so it can be replayed later with its original place on the capture clock. Replaying
+ * is two steps: {@link #peek()}/{@link #sent()} walk a send cursor forward, and a run only
+ * leaves the spool when {@link #acknowledge()} says the recognizer has it. If the stream dies
+ * first, {@link #rewind()} puts the cursor back so the unacknowledged runs go out again. The spool
+ * is bounded by {@code stt.spool.max.bytes}: runs that do not fit are dropped and counted,
+ * since what was spoken first is what the transcript is missing. Once everything has been
+ * acknowledged the file is truncated. Nothing is forced to disk; the spool outlives outages, not
+ * crashes, and the file is deleted on close.
+ *
+ * Not thread-safe; the STT send stage is its only user.
+ */
+public class AudioSpool implements Closeable {
+    private static final int HEADER_BYTES = 8 + 8 + 4;
+
+    /**
+     * One spooled run of audio.
+     */
+    public static final class Segment {
+        private final byte[] audio;
+        private final long captureByte;
+        private final long capturedMillis;
+
+        Segment(byte[] audio, long captureByte, long capturedMillis) {
+            this.audio = audio;
+            this.captureByte = captureByte;
+            this.capturedMillis = capturedMillis;
+        }
+
+        public byte[] getAudio() {
+            return audio;
+        }
+
+        public long getCaptureByte() {
+            return captureByte;
+        }
+
+        public long getCapturedMillis() {
+            return capturedMillis;
+        }
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+    private final long maxBytes;
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    private long writePosition = 0;
+    private long readPosition = 0; // Oldest unacknowledged run
+    private long sendPosition = 0; // Next run to send
+    private Segment next;
+
+    private long spooledBytes = 0;
+    private long replayedBytes = 0;
+    private long droppedBytes = 0;
+
+    public AudioSpool(long maxBytes) throws IOException {
+        this.file = Files.createTempFile("stt-spool", ".pcm");
+        this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+            StandardOpenOption.DELETE_ON_CLOSE);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Adds a run of audio at the tail.
+     *
+     * @return False if the spool is full and the run was dropped
+     */
+    public boolean append(byte[] data, int offset, int length, long captureByte, long capturedMillis) throws IOException {
+        if (writePosition - readPosition + HEADER_BYTES + length > maxBytes) {
+            droppedBytes += length;
+            return false;
+        }
+        header.clear();
+        header.putLong(captureByte).putLong(capturedMillis).putInt(length).flip();
+        ByteBuffer[] record = {header, ByteBuffer.wrap(data, offset, length)};
+        long end = writePosition + HEADER_BYTES + length;
+        channel.position(writePosition);
+        while (record[1].hasRemaining()) {
+            channel.write(record);
+        }
+        writePosition = end;
+        spooledBytes += length;
+        return true;
+    }
+
+    /**
+     * @return The next run to send, without moving past it, or null if all have been sent
+     */
+    public Segment peek() throws IOException {
+        if (next == null && sendPosition < writePosition) {
+            ByteBuffer in = readHeader(sendPosition);
+            int length = in.getInt(16);
+            byte[] audio = new byte[length];
+            readFully(ByteBuffer.wrap(audio), sendPosition + HEADER_BYTES);
+            next = new Segment(audio, in.getLong(0), in.getLong(8));
+        }
+        return next;
+    }
+
+    /**
+     * Moves the send cursor past the run returned by {@link #peek()}.
+     */
+    public void sent() throws IOException {
+        if (peek() == null) {
+            return;
+        }
+        sendPosition += HEADER_BYTES + next.audio.length;
+        next = null;
+    }
+
+    /**
+     * Removes the oldest sent run, now that the recognizer has it.
+     */
+    public void acknowledge() throws IOException {
+        if (readPosition == sendPosition) {
+            return;
+        }
+        int length = readHeader(readPosition).getInt(16);
+        readPosition += HEADER_BYTES + length;
+        replayedBytes += length;
+        if (readPosition == writePosition) {
+            channel.truncate(0);
+            readPosition = 0;
+            sendPosition = 0;
+            writePosition = 0;
+        }
+    }
+
+    /**
+     * Puts the send cursor back to the oldest unacknowledged run.
+     */
+    public void rewind() {
+        sendPosition = readPosition;
+        next = null;
+    }
+
+    private ByteBuffer readHeader(long position) throws IOException {
+        ByteBuffer in = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(in, position);
+        return in;
+    }
+
+    private void readFully(ByteBuffer into, long position) throws IOException {
+        while (into.hasRemaining()) {
+            if (channel.read(into, position + into.position()) < 0) {
+                throw new IOException("Audio spool " + file + " is shorter than its records");
+            }
+        }
+    }
+
+    /**
+     * @return True once every run has been sent and acknowledged
+     */
+    public boolean isEmpty() {
+        return readPosition == writePosition;
+    }
+
+    /**
+     * @return True if runs are waiting to be sent
+     */
+    public boolean hasUnsent() {
+        return sendPosition < writePosition;
+    }
+
+    /**
+     * @return Bytes not yet acknowledged, record headers included
+     */
+    public long pendingBytes() {
+        return writePosition - readPosition;
+    }
+
+    public long getSpooledBytes() {
+        return spooledBytes;
+    }
+
+    public long getReplayedBytes() {
+        return replayedBytes;
+    }
+
+    public long getDroppedBytes() {
+        return droppedBytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
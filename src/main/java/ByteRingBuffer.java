@@ -46,6 +46,28 @@ public class ByteRingBuffer {
         return length;
     }
 
+    /**
+     * Writes data to the buffer, discarding the oldest bytes to make room, so the buffer
+     * always holds the most recent {@code capacity} bytes written.
+     *
+     * @param data The array containing the data to write
+     * @param offset The offset in the data array
+     * @param length The number of bytes to write
+     */
+    public synchronized void writeLatest(byte[] data, int offset, int length) {
+        if (length >= capacity) {
+            offset += length - capacity;
+            length = capacity;
+            clear();
+        }
+        int overflow = length - (capacity - available);
+        if (overflow > 0) {
+            readPosition = (readPosition + overflow) % capacity;
+            available -= overflow;
+        }
+        write(data, offset, length);
+    }
+
     /**
      * Reads data from the buffer.
      *
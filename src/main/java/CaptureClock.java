@@ -0,0 +1,136 @@
+/**
+ * Maps recognizer stream offsets back to capture frames and wall-clock time.
+ *
+ * Only speech (plus the odd keep-alive) is streamed, so a stream's audio clock skips the
+ * silences between sends. Every send is recorded as a span of stream bytes tied to the
+ * capture position it came from; a result offset is located in its span and translated
+ * to the frame and time it was recorded at. Spans live in a fixed ring of primitive
+ * columns, which covers far more audio than a recognizer ever lags behind.
+ */
+public class CaptureClock {
+    public static final int FRAME_BYTES = 640; // 20 ms of 16 kHz, 16-bit mono
+    private static final int BYTES_PER_MILLI = 32;
+    private static final int SPANS = 4096;
+
+    // Ring of recorded sends, guarded by this
+    private final int[] spanStream = new int[SPANS];
+    private final long[] spanStreamByte = new long[SPANS];
+    private final long[] spanCaptureByte = new long[SPANS];
+    private final long[] spanWallMillis = new long[SPANS];
+    private int spanCount = 0;
+
+    private long capturedBytes = 0;
+    private long captureWallMillis = System.currentTimeMillis();
+    private int streamId = 0;
+    private long streamBytes = 0;
+
+    /**
+     * Starts a new recognizer stream, whose offsets restart at zero.
+     *
+     * @return The new stream's id
+     */
+    public synchronized int openStream() {
+        streamBytes = 0;
+        return ++streamId;
+    }
+
+    /**
+     * Records that {@code bytes} more audio were read from the microphone just now.
+     *
+     * @return Capture position of the first of those bytes
+     */
+    public long captured(int bytes) {
+        return captured(bytes, System.currentTimeMillis());
+    }
+
+    /**
+     * Records that {@code bytes} more audio were read from the microphone, the last of them
+     * captured at {@code wallMillis}. A read can return audio that sat in the line's buffer for
+     * a while, so this is earlier than when the read returned.
+     *
+     * @return Capture position of the first of those bytes
+     */
+    public synchronized long captured(int bytes, long wallMillis) {
+        long start = capturedBytes;
+        capturedBytes += bytes;
+        captureWallMillis = wallMillis;
+        return start;
+    }
+
+    /**
+     * Records that the last {@code bytes} captured were sent on the current stream. Filler
+     * audio that was never captured (keep-alives) maps to the current capture position.
+     */
+    public synchronized void sent(int bytes, boolean captured) {
+        record(bytes, captured ? bytes : 0);
+    }
+
+    /**
+     * Records that {@code bytes} of captured audio, starting at capture position
+     * {@code captureByte} and captured at {@code wallMillis}, were sent on the current stream.
+     * Sends run behind capture, so they say where their audio came from.
+     */
+    public synchronized void sentCaptured(int bytes, long captureByte, long wallMillis) {
+        record(bytes, captureByte, wallMillis);
+    }
+
+    private void record(int bytes, long back) {
+        record(bytes, capturedBytes - back, captureWallMillis - back / BYTES_PER_MILLI);
+    }
+
+    private void record(int bytes, long captureByte, long wallMillis) {
+        int slot = spanCount++ % SPANS;
+        spanStream[slot] = streamId;
+        spanStreamByte[slot] = streamBytes;
+        spanCaptureByte[slot] = captureByte;
+        spanWallMillis[slot] = wallMillis;
+        streamBytes += bytes;
+    }
+
+    /**
+     * @return The capture frame holding {@code offsetMillis} into the stream, or -1 if unknown
+     */
+    public synchronized int frameAt(int stream, long offsetMillis) {
+        int slot = findSpan(stream, offsetMillis * BYTES_PER_MILLI);
+        if (slot < 0) {
+            return TranscriptTimeline.UNKNOWN;
+        }
+        long captureByte = spanCaptureByte[slot] + offsetMillis * BYTES_PER_MILLI - spanStreamByte[slot];
+        return (int) (captureByte / FRAME_BYTES);
+    }
+
+    /**
+     * @return When the newest captured byte was captured
+     */
+    public synchronized long capturedMillis() {
+        return captureWallMillis;
+    }
+
+    /**
+     * @return When the audio at {@code offsetMillis} into the stream was captured, or -1 if unknown
+     */
+    public synchronized long wallMillisAt(int stream, long offsetMillis) {
+        int slot = findSpan(stream, offsetMillis * BYTES_PER_MILLI);
+        if (slot < 0) {
+            return TranscriptTimeline.UNKNOWN;
+        }
+        return spanWallMillis[slot] + offsetMillis - spanStreamByte[slot] / BYTES_PER_MILLI;
+    }
+
+    /**
+     * Walks back from the newest span; recognizer results refer to recent audio.
+     */
+    private int findSpan(int stream, long streamByte) {
+        int oldest = Math.max(0, spanCount - SPANS);
+        for (int i = spanCount - 1; i >= oldest; i--) {
+            int slot = i % SPANS;
+            if (spanStream[slot] == stream && spanStreamByte[slot] <= streamByte) {
+                return slot;
+            }
+            if (spanStream[slot] < stream) {
+                break;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,171 @@
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.TargetDataLine;
+
+/**
+ * Watches the microphone line for overruns and gives it a bigger buffer when they happen.
+ *
+ * After every read the line's fill level is sampled, and the frames the device has captured
+ * ({@link TargetDataLine#getLongFramePosition()}) are compared with the frames read plus
+ * the frames still waiting in the buffer. Those only drift apart when the buffer filled up
+ * and the device threw audio away; the first read's difference is taken as the line's own
+ * offset, and growth beyond {@code capture.overrun.tolerance.ms} counts as lost audio.
+ *
+ * On an overrun the line is reopened with double the buffer, up to
+ * {@code capture.buffer.max.ms}. Whatever was still buffered when the line closed, and
+ * whatever the device captured while it was closed, is lost as well and reported with the
+ * overrun, so the capture clock keeps its place. If the line cannot be opened again it is
+ * left closed and the caller stops capturing. Reads that find the buffer 90% full are
+ * counted as near overruns, which shows how close a session came even when nothing was lost.
+ *
+ * The fill level also dates each read: the last byte read was captured as long ago as the
+ * audio still waiting behind it takes to play, which {@link #getCapturedMillis()} reports.
+ *
+ * Used only from the capture thread; counters are volatile so reporters can read them.
+ */
+public class CaptureMonitor {
+    private static final long MAX_BUFFER_MS = Long.getLong("capture.buffer.max.ms", 2_000);
+    private static final long TOLERANCE_MS = Long.getLong("capture.overrun.tolerance.ms", 20);
+    private static final double NEAR_FULL = 0.9;
+
+    private final TargetDataLine line;
+    private final AudioFormat format;
+    private final int frameSize;
+    private final long toleranceFrames;
+    private final long maxBufferBytes;
+
+    // Since the line was last opened
+    private long framesRead = 0;
+    private long baselineGap = Long.MIN_VALUE;
+    private long lostSinceOpen = 0;
+    private long capturedMillis = 0;
+
+    private volatile long overruns = 0;
+    private volatile long lostFrames = 0;
+    private volatile long nearOverruns = 0;
+    private volatile long reopens = 0;
+    private volatile double peakFill = 0;
+
+    public CaptureMonitor(TargetDataLine line, AudioFormat format) {
+        this.line = line;
+        this.format = format;
+        this.frameSize = Math.max(1, format.getFrameSize());
+        this.toleranceFrames = (long) (format.getFrameRate() * TOLERANCE_MS / 1000);
+        this.maxBufferBytes = (long) (format.getFrameRate() * MAX_BUFFER_MS / 1000) * frameSize;
+    }
+
+    /**
+     * Checks the line after a read.
+     *
+     * @param bytesRead What the read returned
+     * @return Bytes of audio lost since the previous read, 0 if none
+     */
+    public int afterRead(int bytesRead) {
+        framesRead += bytesRead / frameSize;
+        int buffered = line.available();
+        // The device is at getLongFramePosition(); the last frame read is the buffered frames behind it
+        capturedMillis = System.currentTimeMillis() - (long) (buffered / frameSize * 1000 / format.getFrameRate());
+        int bufferSize = line.getBufferSize();
+        double fill = bufferSize > 0 ? (double) buffered / bufferSize : 0;
+        if (fill > peakFill) {
+            peakFill = fill;
+        }
+        if (fill >= NEAR_FULL) {
+            nearOverruns++;
+        }
+
+        long gap = line.getLongFramePosition() - framesRead - buffered / frameSize;
+        if (baselineGap == Long.MIN_VALUE) {
+            baselineGap = gap;
+            return 0;
+        }
+        long lost = gap - baselineGap;
+        if (lost - lostSinceOpen <= toleranceFrames) {
+            return 0;
+        }
+        long newlyLost = lost - lostSinceOpen;
+        lostSinceOpen = lost;
+        overruns++;
+        lostFrames += newlyLost;
+
+        PipelineEvents.CaptureOverrun event = new PipelineEvents.CaptureOverrun();
+        if (event.shouldCommit()) {
+            event.lostFrames = newlyLost;
+            event.bufferBytes = bufferSize;
+            event.fill = fill;
+            event.commit();
+        }
+
+        long reopenLost = grow(bufferSize);
+        return (int) Math.min(Integer.MAX_VALUE, newlyLost * frameSize + reopenLost);
+    }
+
+    /**
+     * Reopens the line with twice the buffer, if it may grow. If it cannot be opened at all,
+     * it is reported and left closed.
+     *
+     * @return Bytes of audio lost to the reopen: discarded from the buffer or never captured
+     */
+    private long grow(int bufferSize) {
+        long larger = Math.min(maxBufferBytes, 2L * bufferSize);
+        larger -= larger % frameSize;
+        if (larger <= bufferSize) {
+            return 0;
+        }
+        long closed = System.nanoTime();
+        line.stop();
+        long discarded = line.available();
+        line.close();
+        try {
+            line.open(format, (int) larger);
+        } catch (LineUnavailableException | IllegalArgumentException e) {
+            System.err.println("Could not reopen the microphone with a " + larger + " byte buffer: " + e.getMessage());
+            try {
+                line.open(format, bufferSize);
+            } catch (LineUnavailableException | IllegalArgumentException again) {
+                System.err.println("Could not reopen the microphone: " + again.getMessage() + "; stopping capture");
+                return 0;
+            }
+        }
+        line.start();
+        long missedFrames = (long) ((System.nanoTime() - closed) / 1e9 * format.getFrameRate());
+        long reopenLost = discarded + missedFrames * frameSize;
+        lostFrames += reopenLost / frameSize;
+        reopens++;
+        framesRead = 0;
+        baselineGap = Long.MIN_VALUE;
+        lostSinceOpen = 0;
+        System.err.printf("Capture overrun; microphone buffer now %d ms%n",
+            (long) (line.getBufferSize() / frameSize * 1000 / format.getFrameRate()));
+        return reopenLost;
+    }
+
+    /**
+     * @return When the last byte of the latest read was captured
+     */
+    public long getCapturedMillis() {
+        return capturedMillis;
+    }
+
+    public long getOverruns() {
+        return overruns;
+    }
+
+    public long getLostFrames() {
+        return lostFrames;
+    }
+
+    public long getNearOverruns() {
+        return nearOverruns;
+    }
+
+    public long getReopens() {
+        return reopens;
+    }
+
+    public String stats() {
+        return String.format("capture    buffer %d ms, peak fill %.0f%%, %d near overruns, %d overruns losing %.2f s, %d reopens",
+            (long) (line.getBufferSize() / frameSize * 1000 / format.getFrameRate()), 100 * peakFill,
+            nearOverruns, overruns, lostFrames / format.getFrameRate(), reopens);
+    }
+}
@@ -1,12 +1,30 @@
-import java.io.IOException;
+import java.io.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ConsoleDisplay {
     private static final String CLEAR_SCREEN = "\033[H\033[2J";
     private static final String CURSOR_HOME = "\033[H";
+    private static final String CLEAR_TO_END_OF_LINE = "\033[K";
+    private static final String CLEAR_TO_END_OF_SCREEN = "\033[J";
+    private static final String SAVE_CURSOR = "\0337";
+    private static final String RESTORE_CURSOR = "\0338";
     private static final boolean IS_WINDOWS = System.getProperty("os.name").toLowerCase().contains("win");
+    // Narrowest terminal assumed; lines longer than this may wrap onto extra rows
+    private static final int COLUMNS = Integer.getInteger("console.columns", 80);
+    
+    // Frames are written straight to the terminal; everything else goes through System.out/err,
+    // which count their writes (once trackOutput has run) so the renderer knows when the screen
+    // has scrolled under it
+    private static final PrintStream TERMINAL = System.out;
+    private static final AtomicLong externalWrites = new AtomicLong();
+    private static boolean tracking = false;
     
     private boolean useClearing = true;
     
+    // Last frame drawn, guarded by this
+    private String[] drawnLines = null;
+    private long drawnAtWrites = -1;
+    
     public ConsoleDisplay() {
         // Test if terminal supports ANSI escape codes
         testAnsiSupport();
@@ -76,6 +94,97 @@ public class ConsoleDisplay {
         }
     }
     
+    /**
+     * Draws a full screen of content, rewriting only the lines that differ from the last
+     * frame. Falls back to a full redraw when other output has been printed since, because
+     * the terminal may have scrolled and the old rows are no longer where they were drawn.
+     */
+    public synchronized void renderFrame(String content) {
+        if (!useClearing) {
+            displayTranscriptBuffer(content);
+            return;
+        }
+        
+        String[] lines = content.split("\n");
+        StringBuilder out = new StringBuilder();
+        if (drawnLines == null || externalWrites.get() != drawnAtWrites) {
+            out.append(CLEAR_SCREEN).append(content);
+        } else {
+            appendDiff(out, drawnLines, lines);
+        }
+        if (out.length() > 0) {
+            TERMINAL.print(out);
+            TERMINAL.flush();
+        }
+        drawnLines = lines;
+        drawnAtWrites = externalWrites.get();
+    }
+    
+    private static void appendDiff(StringBuilder out, String[] previous, String[] lines) {
+        // Row numbers are only certain up to the first line that might wrap, so lines before
+        // it are patched in place and any change from there on redraws the rest of the screen
+        int exactRows = Math.min(previous.length, lines.length);
+        for (int i = 0; i < exactRows; i++) {
+            if (previous[i].length() > COLUMNS || lines[i].length() > COLUMNS) {
+                exactRows = i;
+                break;
+            }
+        }
+        
+        boolean patched = false;
+        for (int i = 0; i < exactRows; i++) {
+            if (!previous[i].equals(lines[i])) {
+                if (!patched) {
+                    out.append(SAVE_CURSOR);
+                    patched = true;
+                }
+                out.append("\033[").append(i + 1).append(";1H").append(lines[i]).append(CLEAR_TO_END_OF_LINE);
+            }
+        }
+        
+        boolean tailChanged = previous.length != lines.length;
+        for (int i = exactRows; i < lines.length && !tailChanged; i++) {
+            tailChanged = !previous[i].equals(lines[i]);
+        }
+        if (tailChanged) {
+            // Leaves the cursor just below the new frame, where a full redraw would
+            out.append("\033[").append(exactRows + 1).append(";1H").append(CLEAR_TO_END_OF_SCREEN);
+            for (int i = exactRows; i < lines.length; i++) {
+                out.append(lines[i]).append('\n');
+            }
+        } else if (patched) {
+            out.append(RESTORE_CURSOR);
+        }
+    }
+    
+    private static PrintStream track(PrintStream target) {
+        return new PrintStream(new FilterOutputStream(target) {
+            @Override
+            public void write(int b) throws IOException {
+                externalWrites.incrementAndGet();
+                out.write(b);
+            }
+            
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                externalWrites.incrementAndGet();
+                out.write(b, off, len);
+            }
+        }, true);
+    }
+    
+    /**
+     * Replaces System.out and System.err with streams that count their writes. Call at startup,
+     * before anything keeps its own reference to either stream.
+     */
+    public static synchronized void trackOutput() {
+        if (!tracking) {
+            tracking = true;
+            System.setOut(track(TERMINAL));
+            System.setErr(track(System.err));
+        }
+    }
+    
     public void appendToDisplay(String content) {
         System.out.print(content);
         System.out.flush();
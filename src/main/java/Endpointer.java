@@ -0,0 +1,76 @@
+/**
+ * Decides which VAD frames of captured audio belong to an utterance and should be streamed.
+ *
+ * All durations are audio time, counted in 10 ms frames, so the behaviour does not depend
+ * on how large the capture reads are:
+ * <ul>
+ *   <li>{@code endpoint.onset.ms}: continuous speech needed before an utterance opens, so
+ *       clicks and single noisy frames are not streamed. The onset frames themselves are sent
+ *       as far as they lie in the current read.</li>
+ *   <li>{@code endpoint.offset.ms}: silence kept open after speech, so pauses between words
+ *       do not cut the utterance.</li>
+ *   <li>{@code endpoint.min.speech.ms}: an utterance with less speech than this gets only as
+ *       much trailing silence as it had speech, rather than the full offset hangover.</li>
+ * </ul>
+ * Seconds of audio sent and suppressed are totalled by {@link SttUsage}.
+ */
+public class Endpointer {
+    public static final int FRAME_BYTES = 320; // 10 ms of 16 kHz, 16-bit mono; the VAD's frame size
+    private static final int FRAME_MS = 10;
+    private static final int ONSET_MS = Integer.getInteger("endpoint.onset.ms", 30);
+    private static final int OFFSET_MS = Integer.getInteger("endpoint.offset.ms", 500);
+    private static final int MIN_SPEECH_MS = Integer.getInteger("endpoint.min.speech.ms", 150);
+
+    private boolean open = false;
+    private int onsetMs = 0;      // Continuous speech so far while closed
+    private int speechMs = 0;     // Speech in the open utterance
+    private int silenceMs = 0;    // Silence since the utterance's last speech
+
+    /**
+     * @param voiced VAD decision for each frame of a read
+     * @param frames Number of frames in the read
+     * @param send Receives true for each frame to stream
+     * @return True if any frame is to be streamed
+     */
+    public boolean process(boolean[] voiced, int frames, boolean[] send) {
+        for (int i = 0; i < frames; i++) {
+            if (!open) {
+                send[i] = false;
+                if (!voiced[i]) {
+                    onsetMs = 0;
+                    continue;
+                }
+                onsetMs += FRAME_MS;
+                if (onsetMs >= ONSET_MS) {
+                    open = true;
+                    speechMs = onsetMs;
+                    silenceMs = 0;
+                    for (int j = Math.max(0, i + 1 - onsetMs / FRAME_MS); j <= i; j++) {
+                        send[j] = true;
+                    }
+                }
+            } else if (voiced[i]) {
+                speechMs += FRAME_MS;
+                silenceMs = 0;
+                send[i] = true;
+            } else {
+                silenceMs += FRAME_MS;
+                int hangover = speechMs >= MIN_SPEECH_MS ? OFFSET_MS : speechMs;
+                if (silenceMs > hangover) {
+                    open = false;
+                    onsetMs = 0;
+                    send[i] = false;
+                } else {
+                    send[i] = true;
+                }
+            }
+        }
+
+        for (int i = 0; i < frames; i++) {
+            if (send[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
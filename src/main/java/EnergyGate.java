@@ -0,0 +1,46 @@
+/**
+ * Cheap speech detector that compares a chunk's loudness to the room's background level.
+ *
+ * Used when the real VAD is unavailable. The background (noise floor) follows quiet chunks
+ * slowly and drops at once when the room gets quieter, so a chunk counts as speech when
+ * its RMS is {@code vad.energy.ratio} times the floor and above {@code vad.energy.min.rms}.
+ * Much coarser than the VAD, but it keeps silence from being streamed.
+ */
+public class EnergyGate {
+    private static final double RATIO = Double.parseDouble(System.getProperty("vad.energy.ratio", "3.0"));
+    private static final double MIN_RMS = Double.parseDouble(System.getProperty("vad.energy.min.rms", "300"));
+    private static final double FLOOR_ADAPT = 0.05;
+
+    private double noiseFloor = MIN_RMS / RATIO;
+
+    /**
+     * @param chunk 16-bit little-endian mono samples
+     */
+    public boolean isSpeech(byte[] chunk) {
+        return isSpeech(chunk, 0, chunk.length);
+    }
+
+    public boolean isSpeech(byte[] audio, int offset, int length) {
+        double rms = rms(audio, offset, length);
+        boolean speech = rms > Math.max(MIN_RMS, noiseFloor * RATIO);
+        if (rms < noiseFloor) {
+            noiseFloor = rms;
+        } else if (!speech) {
+            noiseFloor += (rms - noiseFloor) * FLOOR_ADAPT;
+        }
+        return speech;
+    }
+
+    private static double rms(byte[] audio, int offset, int length) {
+        int samples = length / 2;
+        if (samples == 0) {
+            return 0;
+        }
+        long sum = 0;
+        for (int i = offset; i < offset + samples * 2; i += 2) {
+            int sample = (short) ((audio[i] & 0xFF) | (audio[i + 1] << 8));
+            sum += (long) sample * sample;
+        }
+        return Math.sqrt((double) sum / samples);
+    }
+}
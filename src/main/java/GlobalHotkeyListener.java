@@ -1,25 +1,16 @@
 import com.github.kwhat.jnativehook.GlobalScreen;
-import com.github.kwhat.jnativehook.NativeHookException;
 import com.github.kwhat.jnativehook.keyboard.NativeKeyEvent;
-import com.github.kwhat.jnativehook.keyboard.NativeKeyListener;
 
-import java.util.HashSet;
-import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-public class GlobalHotkeyListener implements NativeKeyListener {
-    
-    // Track currently pressed keys
-    private final Set<Integer> pressedKeys = new HashSet<>();
+public class GlobalHotkeyListener {
     
     // Define the hotkey combination: Alt+Ctrl+Shift+W
-    private static final int[] HOTKEY_COMBINATION = {
-        NativeKeyEvent.VC_ALT,
-        NativeKeyEvent.VC_CONTROL,
-        NativeKeyEvent.VC_SHIFT,
-        NativeKeyEvent.VC_W
-    };
+    private static final int HOTKEY_KEY = NativeKeyEvent.VC_W;
+    private static final int HOTKEY_MODIFIERS = HotkeyDispatcher.ALT | HotkeyDispatcher.CONTROL | HotkeyDispatcher.SHIFT;
+    
+    private HotkeyDispatcher dispatcher;
     
     public GlobalHotkeyListener() {
         // Disable JNativeHook logging to avoid console spam
@@ -28,51 +19,26 @@ public class GlobalHotkeyListener implements NativeKeyListener {
         logger.setUseParentHandlers(false);
     }
     
-    public void register() throws NativeHookException {
-        // Don't register GlobalScreen here - it should already be registered in Main
-        GlobalScreen.addNativeKeyListener(this);
-        System.out.println("Global hotkey listener registered. Press Alt+Ctrl+Shift+W to trigger.");
-    }
-    
-    public void unregister() throws NativeHookException {
-        GlobalScreen.removeNativeKeyListener(this);
-        // Don't unregister GlobalScreen here - let Main handle it
-    }
-    
-    @Override
-    public void nativeKeyPressed(NativeKeyEvent e) {
-        int keyCode = e.getKeyCode();
-        pressedKeys.add(keyCode);
-        
-        // Check if all keys in the combination are pressed
-        if (isHotkeyPressed()) {
+    public void register(HotkeyDispatcher dispatcher) {
+        // Bound through the shared dispatcher, which Main registers with GlobalScreen
+        this.dispatcher = dispatcher;
+        dispatcher.bind(HOTKEY_KEY, HOTKEY_MODIFIERS, () -> {
             System.out.println("User has pressed 'Alt+Ctrl+Shift+W'");
             // You can trigger any action here
             onHotkeyPressed();
-        }
-    }
-    
-    @Override
-    public void nativeKeyReleased(NativeKeyEvent e) {
-        pressedKeys.remove(e.getKeyCode());
-    }
-    
-    @Override
-    public void nativeKeyTyped(NativeKeyEvent e) {
-        // Not used for hotkey detection
+        });
+        System.out.println("Global hotkey listener registered. Press Alt+Ctrl+Shift+W to trigger.");
     }
     
-    private boolean isHotkeyPressed() {
-        for (int keyCode : HOTKEY_COMBINATION) {
-            if (!pressedKeys.contains(keyCode)) {
-                return false;
-            }
+    public void unregister() {
+        if (dispatcher != null) {
+            dispatcher.unbind(HOTKEY_KEY, HOTKEY_MODIFIERS);
+            dispatcher = null;
         }
-        return true;
     }
     
     // Override this method to customize what happens when the hotkey is pressed
     protected void onHotkeyPressed() {
         // This method can be overridden to perform custom actions
     }
-}
\ No newline at end of file
+}
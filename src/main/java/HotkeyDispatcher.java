@@ -0,0 +1,265 @@
+import com.github.kwhat.jnativehook.GlobalScreen;
+import com.github.kwhat.jnativehook.keyboard.NativeKeyEvent;
+import com.github.kwhat.jnativehook.keyboard.NativeKeyListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The single native key listener; every hotkey in the application is bound through it.
+ *
+ * Held modifiers are tracked as an int bitmask and bindings are compiled into an
+ * open-addressing table keyed by {@code keyCode << 4 | modifiers}, so handling a key
+ * event is a couple of array reads with no allocation. Key repeats of a held binding
+ * are swallowed until its key is released, which is when {@link Hotkey#released()} runs.
+ *
+ * All event handling happens on the native hook's dispatch thread; binding may be done
+ * from any thread and takes effect on the next event. Callbacks can ask for
+ * {@link #eventMillis()} to learn when their key actually went down or up.
+ */
+public class HotkeyDispatcher implements NativeKeyListener {
+    public static final int SHIFT = 1;
+    public static final int CONTROL = 2;
+    public static final int ALT = 4;
+    public static final int META = 8;
+    private static final int MAX_HELD = 8;
+
+    /**
+     * Something to run when a key combination is pressed.
+     */
+    public interface Hotkey {
+        void pressed();
+
+        default void released() {
+        }
+    }
+
+    /**
+     * Gets first look at every key, for modes that take over the keyboard (search typing).
+     */
+    public interface KeyInterceptor {
+        /**
+         * @return true to consume the key so no hotkey fires
+         */
+        boolean keyPressed(int keyCode, int modifiers);
+
+        void keyTyped(char c, int modifiers);
+    }
+
+    /**
+     * Immutable compiled lookup table; rebuilt whenever the bindings change.
+     */
+    private static final class Table {
+        final int[] keys;     // 0 marks an empty slot; stored keys are offset by one
+        final Hotkey[] hotkeys;
+        final int mask;
+
+        Table(List<int[]> keyList, List<Hotkey> hotkeyList) {
+            int capacity = Integer.highestOneBit(Math.max(4, keyList.size() * 4) - 1) << 1;
+            keys = new int[capacity];
+            hotkeys = new Hotkey[capacity];
+            mask = capacity - 1;
+            for (int i = 0; i < keyList.size(); i++) {
+                int key = pack(keyList.get(i)[0], keyList.get(i)[1]) + 1;
+                int slot = hash(key) & mask;
+                while (keys[slot] != 0 && keys[slot] != key) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                hotkeys[slot] = hotkeyList.get(i);
+            }
+        }
+
+        Hotkey get(int keyCode, int modifiers) {
+            int key = pack(keyCode, modifiers) + 1;
+            int slot = hash(key) & mask;
+            while (keys[slot] != 0) {
+                if (keys[slot] == key) {
+                    return hotkeys[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        private static int pack(int keyCode, int modifiers) {
+            return keyCode << 4 | modifiers;
+        }
+
+        private static int hash(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    // Source of truth for the table, guarded by this
+    private final List<int[]> boundKeys = new ArrayList<>();
+    private final List<Hotkey> boundHotkeys = new ArrayList<>();
+    private volatile Table table = new Table(boundKeys, boundHotkeys);
+    private volatile KeyInterceptor interceptor;
+
+    // Dispatch thread state
+    private int modifiers = 0;
+    private final int[] heldKeys = new int[MAX_HELD];
+    private final Hotkey[] heldHotkeys = new Hotkey[MAX_HELD];
+    private int heldCount = 0;
+    private long whenOffset = Long.MAX_VALUE; // Wall clock minus the hook's event clock
+    private long eventMillis = 0;
+
+    public void register() {
+        GlobalScreen.addNativeKeyListener(this);
+    }
+
+    public void unregister() {
+        GlobalScreen.removeNativeKeyListener(this);
+    }
+
+    /**
+     * Binds a key combination, replacing any earlier binding of the same combination.
+     *
+     * @param modifierMask Any of {@link #SHIFT}, {@link #CONTROL}, {@link #ALT}, {@link #META}
+     */
+    public synchronized void bind(int keyCode, int modifierMask, Hotkey hotkey) {
+        unbindLocked(keyCode, modifierMask);
+        boundKeys.add(new int[]{keyCode, modifierMask});
+        boundHotkeys.add(hotkey);
+        table = new Table(boundKeys, boundHotkeys);
+    }
+
+    public synchronized void unbind(int keyCode, int modifierMask) {
+        unbindLocked(keyCode, modifierMask);
+        table = new Table(boundKeys, boundHotkeys);
+    }
+
+    private void unbindLocked(int keyCode, int modifierMask) {
+        for (int i = boundKeys.size() - 1; i >= 0; i--) {
+            if (boundKeys.get(i)[0] == keyCode && boundKeys.get(i)[1] == modifierMask) {
+                boundKeys.remove(i);
+                boundHotkeys.remove(i);
+            }
+        }
+    }
+
+    public void setInterceptor(KeyInterceptor interceptor) {
+        this.interceptor = interceptor;
+    }
+
+    /**
+     * Converts a set of modifier key codes (as stored in key binding config) to a bitmask.
+     */
+    public static int maskOf(Set<Integer> modifierKeys) {
+        int mask = 0;
+        for (int keyCode : modifierKeys) {
+            mask |= modifierBit(keyCode);
+        }
+        return mask;
+    }
+
+    private static int modifierBit(int keyCode) {
+        switch (keyCode) {
+            case NativeKeyEvent.VC_SHIFT:
+                return SHIFT;
+            case NativeKeyEvent.VC_CONTROL:
+                return CONTROL;
+            case NativeKeyEvent.VC_ALT:
+                return ALT;
+            case NativeKeyEvent.VC_META:
+                return META;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Wall-clock time of the key event being dispatched. Only meaningful on the dispatch
+     * thread, from inside a {@link Hotkey} callback.
+     */
+    public long eventMillis() {
+        return eventMillis;
+    }
+
+    /**
+     * Converts the event's own timestamp to wall-clock time. Some platforms stamp events
+     * with uptime rather than epoch millis, so the offset between the two clocks is
+     * learned as the smallest gap seen (the event delivered with the least delay); a
+     * large jump means the event clock was reset and the offset starts over.
+     */
+    private void stamp(NativeKeyEvent e) {
+        long now = System.currentTimeMillis();
+        long offset = now - e.getWhen();
+        if (offset < whenOffset || offset > whenOffset + 1000) {
+            whenOffset = offset;
+        }
+        eventMillis = Math.min(now, e.getWhen() + whenOffset);
+    }
+
+    @Override
+    public void nativeKeyPressed(NativeKeyEvent e) {
+        int keyCode = e.getKeyCode();
+        int bit = modifierBit(keyCode);
+        if (bit != 0) {
+            modifiers |= bit;
+            return;
+        }
+        if (heldIndex(keyCode) >= 0) {
+            return; // Auto-repeat of a binding that already fired
+        }
+
+        KeyInterceptor current = interceptor;
+        if (current != null && current.keyPressed(keyCode, modifiers)) {
+            return;
+        }
+
+        Hotkey hotkey = table.get(keyCode, modifiers);
+        if (hotkey == null) {
+            return;
+        }
+        stamp(e);
+        if (heldCount < MAX_HELD) {
+            heldKeys[heldCount] = keyCode;
+            heldHotkeys[heldCount] = hotkey;
+            heldCount++;
+        }
+        hotkey.pressed();
+    }
+
+    @Override
+    public void nativeKeyReleased(NativeKeyEvent e) {
+        int keyCode = e.getKeyCode();
+        int bit = modifierBit(keyCode);
+        if (bit != 0) {
+            modifiers &= ~bit;
+            return;
+        }
+
+        int index = heldIndex(keyCode);
+        if (index < 0) {
+            return;
+        }
+        Hotkey hotkey = heldHotkeys[index];
+        heldCount--;
+        heldKeys[index] = heldKeys[heldCount];
+        heldHotkeys[index] = heldHotkeys[heldCount];
+        heldHotkeys[heldCount] = null;
+        stamp(e);
+        hotkey.released();
+    }
+
+    @Override
+    public void nativeKeyTyped(NativeKeyEvent e) {
+        KeyInterceptor current = interceptor;
+        if (current != null) {
+            current.keyTyped(e.getKeyChar(), modifiers);
+        }
+    }
+
+    private int heldIndex(int keyCode) {
+        for (int i = 0; i < heldCount; i++) {
+            if (heldKeys[i] == keyCode) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
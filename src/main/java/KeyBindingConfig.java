@@ -11,7 +11,9 @@ public class KeyBindingConfig {
         SUBMIT("Submit Selection"),
         CONTINUOUS_MODE("Toggle Continuous Mode"),
         CLEAR_SELECTION("Clear Selection"),
-        MUTE_WHILE_HELD("Mute While Held");
+        MUTE_WHILE_HELD("Mute While Held"),
+        SEARCH("Search History"),
+        SELECT_RECENT("Select Recent Speech");
         
         private final String displayName;
         
@@ -27,18 +29,16 @@ public class KeyBindingConfig {
     public static class KeyBinding {
         private final int keyCode;
         private final Set<Integer> modifiers;
+        private final int modifierMask;
         private final String displayString;
         
         public KeyBinding(int keyCode, Set<Integer> modifiers) {
             this.keyCode = keyCode;
             this.modifiers = new HashSet<>(modifiers);
+            this.modifierMask = HotkeyDispatcher.maskOf(modifiers);
             this.displayString = buildDisplayString(keyCode, modifiers);
         }
         
-        public boolean matches(int pressedKey, Set<Integer> pressedModifiers) {
-            return keyCode == pressedKey && modifiers.equals(pressedModifiers);
-        }
-        
         public String getDisplayString() {
             return displayString;
         }
@@ -47,6 +47,13 @@ public class KeyBindingConfig {
             return keyCode;
         }
         
+        /**
+         * @return The modifiers as a {@link HotkeyDispatcher} bitmask
+         */
+        public int getModifierMask() {
+            return modifierMask;
+        }
+        
         private static String buildDisplayString(int keyCode, Set<Integer> modifiers) {
             StringBuilder sb = new StringBuilder();
             
@@ -82,15 +89,6 @@ public class KeyBindingConfig {
         return bindings.get(action);
     }
     
-    public Action findAction(int keyCode, Set<Integer> modifiers) {
-        for (Map.Entry<Action, KeyBinding> entry : bindings.entrySet()) {
-            if (entry.getValue() != null && entry.getValue().matches(keyCode, modifiers)) {
-                return entry.getKey();
-            }
-        }
-        return null;
-    }
-    
     public void saveToFile() {
         Properties props = new Properties();
         for (Map.Entry<Action, KeyBinding> entry : bindings.entrySet()) {
@@ -3,17 +3,20 @@
 import javax.sound.sampled.*;
 import java.io.IOException;
 import com.google.cloud.speech.v1.*;
-import com.google.protobuf.ByteString;
-import com.google.api.gax.rpc.BidiStream;
 
 import java.io.BufferedReader;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintStream;
-import java.io.FileOutputStream;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Iterator;
 import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.io.OutputStream;
@@ -27,21 +30,63 @@ public class Main {
 
     // Adding a flag that can be used to signal program exit
     private static volatile boolean shouldExit = false;
+    // Set once main has finished its cleanup, and once the JVM has started shutting down
+    private static volatile boolean sessionEnded = false;
+    private static volatile boolean shuttingDown = false;
+    // How long Ctrl-C waits for main to drain the pipeline and print its summaries
+    private static final long SHUTDOWN_WAIT_MS = Long.getLong("shutdown.wait.ms", 10_000);
 
     // Rate limiting configuration - minimum time between API requests in milliseconds
     private static final long RATE_LIMIT_MS = 1000; // 1 second between requests
     private static long lastRequestTime = 0;
+    
+    // Questions wait here for the LLM, one at a time so the rate limit holds; extra ones are dropped
+    private static PipelineStage<String> llmStage;
+    
+    // Recognizer results wait here to be added to the transcript
+    private static PipelineStage<RecognizerStreams.Result> transcriptStage;
+    
+    // How long shutdown waits for queued audio and results, and how often stage stats are printed (0 = at exit only)
+    private static final long PIPELINE_DRAIN_MS = Long.getLong("pipeline.drain.ms", 2000);
+    private static final int PIPELINE_STATS_SECONDS = Integer.getInteger("pipeline.stats.seconds", 0);
 
     // Create separate output streams for regular and AI output
     private static PrintStream regularOutput = System.out;
     private static PrintStream aiOutput = System.out; // By default, use System.out
+    private static AsyncLogSink aiLog; // Behind aiOutput when AI output is separated
     private static final String AI_OUTPUT_FILE = "ai_output.log";
+    
+    // Optional push feed of transcripts and answers for local readers, e.g. -Danswer.feed.socket=ai_answers.sock
+    private static final String ANSWER_FEED_SOCKET = System.getProperty("answer.feed.socket");
+    private static AnswerFeed answerFeed;
 
     // Flag to determine if AI output should be separated
     private static boolean separateAiOutput = Boolean.parseBoolean(System.getProperty("separate.ai.output", "false"));
     
-    // VAD checker instance
-    private static VADChecker vadChecker = new VADChecker();
+    // Blocking workers (recognizer responses, keyboard, LLM calls, VAD stderr) run in this scope
+    private static final WorkerScope workers = WorkerScope.open("workers");
+    
+    // Voice activity detection, with restarts and an energy-gate fallback
+    private static VADSupervisor vadSupervisor = new VADSupervisor(workers);
+    
+    // Startup steps run in this scope in headless mode, inline otherwise
+    private static WorkerScope startupScope;
+    private static final StartupTimeline startupTimeline = new StartupTimeline();
+    
+    // Turns per-frame VAD decisions into utterances to stream
+    private static final Endpointer endpointer = new Endpointer();
+    
+    // Seconds of audio captured, streamed and held back, and bytes sent to the recognizer
+    private static final SttUsage sttUsage = new SttUsage();
+    private static final int STT_USAGE_SECONDS = Integer.getInteger("stt.usage.seconds", 0);
+    
+    // Speech end to final transcript, for comparing stt.finalize modes; guarded by Main.class
+    private static long finalLatencyCount = 0;
+    private static long finalLatencyTotal = 0;
+    private static long finalLatencyMax = 0;
+    
+    // Ties recognizer result offsets back to when the audio was captured
+    private static final CaptureClock captureClock = new CaptureClock();
     
     // Global hotkey listener
     private static GlobalHotkeyListener hotkeyListener;
@@ -49,19 +94,57 @@ public class Main {
     // Transcript buffer and navigation
     private static TranscriptBuffer transcriptBuffer = new TranscriptBuffer();
     private static TranscriptNavigationHandler navigationHandler;
+    private static HotkeyDispatcher hotkeyDispatcher;
     
-    // Mute state for push-to-mute functionality
-    private static volatile boolean isMuted = false;
+    // Push-to-mute, applied per 20 ms frame by when the key went down and up
+    private static final MuteGate muteGate = new MuteGate();
     
     public static void setMuted(boolean muted) {
-        isMuted = muted;
+        setMuted(muted, System.currentTimeMillis());
+    }
+    
+    public static void setMuted(boolean muted, long atMillis) {
+        muteGate.setMuted(muted, atMillis);
     }
     
     public static boolean isMuted() {
-        return isMuted;
+        return muteGate.isMuted();
+    }
+    
+    public static MuteGate getMuteGate() {
+        return muteGate;
     }
 
     public static void main(String[] args) throws LineUnavailableException {
+        // Count console writes so the transcript display knows when other output has scrolled it
+        ConsoleDisplay.trackOutput();
+        regularOutput = System.out;
+        aiOutput = System.out;
+
+        // Ctrl-C ends the session the way 'q' does: the capture loop stops and main unwinds
+        // through its cleanup, so the exit summaries still print
+        Thread mainThread = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            shuttingDown = true;
+            shouldExit = true;
+            if (!sessionEnded) {
+                try {
+                    mainThread.join(SHUTDOWN_WAIT_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "session-shutdown"));
+
+        StartupConfig startup;
+        try {
+            startup = StartupConfig.parse(args);
+        } catch (IOException | IllegalArgumentException e) {
+            regularOutput.println("Invalid startup options: " + e.getMessage());
+            regularOutput.println("Usage: Main [--headless] [--device <number|name>] [--config <file>] [--no-warmup]");
+            return;
+        }
+
         // Initialize separate output stream if requested
         if (separateAiOutput) {
             try {
@@ -71,8 +154,13 @@ public class Main {
                 // Keep regular output on System.out
                 regularOutput = System.out;
 
-                // Create a new output file that IntelliJ can attach to a different console
-                aiOutput = new PrintStream(new FileOutputStream(AI_OUTPUT_FILE, true));
+                // Create a new output file that IntelliJ can attach to a different console;
+                // written on its own thread so no caller waits on the disk
+                aiLog = new AsyncLogSink(Paths.get(AI_OUTPUT_FILE));
+                aiOutput = aiLog.printStream();
+                // The writer is a daemon; drain what is queued (usually the last answer) however the JVM exits
+                AsyncLogSink log = aiLog;
+                Runtime.getRuntime().addShutdownHook(new Thread(log::close, "ai-log-close"));
                 aiOutput.println("AI output initialized");
             } catch (Exception e) {
                 regularOutput.println("Failed to initialize separate AI output: " + e.getMessage());
@@ -81,61 +169,60 @@ public class Main {
             }
         }
 
+        if (ANSWER_FEED_SOCKET != null) {
+            try {
+                answerFeed = new AnswerFeed(Paths.get(ANSWER_FEED_SOCKET));
+                regularOutput.println("Answer feed listening on " + ANSWER_FEED_SOCKET);
+            } catch (IOException e) {
+                regularOutput.println("Failed to start answer feed: " + e.getMessage());
+            }
+        }
+
         regularOutput.println("Hello and welcome!");
 
         for (int i = 1; i <= 5; i++) {
             regularOutput.println("i = " + i);
         }
 
-        // List available mixers and their target lines
-        Mixer.Info[] mixers = AudioSystem.getMixerInfo();
-        regularOutput.println("Available audio input devices:");
-
-        List<Mixer.Info> inputDevices = new ArrayList<>();
-        for(Mixer.Info mxr:mixers) {
-            Mixer mixer = AudioSystem.getMixer(mxr);
-            Line.Info[] targetLineInfo = mixer.getTargetLineInfo();
-            if (targetLineInfo.length > 0) {
-                inputDevices.add(mxr);
-                regularOutput.println(inputDevices.size() - 1 + ": " + mxr.getName() + " - " + mxr.getDescription());
-            }
+        // In headless mode the independent startup steps run at once; otherwise one after another
+        if (startup.isHeadless()) {
+            startupScope = workers.child("startup");
         }
 
-        // Prompt user to select an input device
-        regularOutput.println("\nEnter the number of the input device to use:");
-        Scanner deviceScanner = new Scanner(System.in);
-        int deviceIndex = -1;
-        while (deviceIndex < 0 || deviceIndex >= inputDevices.size()) {
-            try {
-                String input = deviceScanner.nextLine().trim();
-                deviceIndex = Integer.parseInt(input);
-                if (deviceIndex < 0 || deviceIndex >= inputDevices.size()) {
-                    regularOutput.println("Invalid selection. Please enter a number between 0 and " + (inputDevices.size() - 1));
-                }
-            } catch (NumberFormatException e) {
-                regularOutput.println("Please enter a valid number");
+        TargetDataLine microphone = null;
+        Future<SpeechClient> speechStep = null;
+        try {
+            Future<TargetDataLine> microphoneStep = startupStep("audio device", () -> openMicrophone(startup));
+            Future<Void> vadStep = startupStep("VAD", () -> {
+                // Initialize VAD checker
+                regularOutput.println("Initializing Voice Activity Detector...");
+                vadSupervisor.start();
+                return null;
+            });
+            Future<Void> hookStep = startupStep("native hook", () -> {
+                // Initialize global native hook system
+                GlobalScreen.registerNativeHook();
+                return null;
+            });
+            speechStep = startupStep("speech client", () -> {
+                // Google Speech-to-Text streaming setup
+                // Set up credentials with quota project ID
+                SpeechSettings settings = SpeechSettings.newBuilder()
+                        .setQuotaProjectId("bettnet-sporting")
+                        .build();
+                return SpeechClient.create(settings);
+            });
+            if (startup.isHeadless() && startup.isLlmWarmup()) {
+                startupStep("LLM warm-up", () -> {
+                    warmUpLlm();
+                    return null;
+                });
             }
-        }
 
-        Mixer.Info micInput = inputDevices.get(deviceIndex);
-        regularOutput.println("Selected input device: " + micInput.getName());
-
-        Mixer micMixer = AudioSystem.getMixer(micInput);
-        // Get the first available TargetDataLine from the selected mixer
-        Line.Info[] targetLineInfos = micMixer.getTargetLineInfo();
-        TargetDataLine microphone = (TargetDataLine) micMixer.getLine(targetLineInfos[0]);
-        // Audio format setup
-        AudioFormat format = new AudioFormat(16000, 16, 1, true, false);
-        microphone.open(format);
-
-        try {
-            // Initialize VAD checker
-            regularOutput.println("Initializing Voice Activity Detector...");
-            vadChecker.start();
-            
-            // Initialize global native hook system first
+            microphone = await(microphoneStep);
+            await(vadStep);
             try {
-                GlobalScreen.registerNativeHook();
+                await(hookStep);
             } catch (NativeHookException e) {
                 regularOutput.println("Error: Could not register native keyboard hook: " + e.getMessage());
                 return;
@@ -144,45 +231,60 @@ public class Main {
             // Initialize key bindings
             KeyBindingConfig keyConfig = new KeyBindingConfig();
             keyConfig.loadFromFile();
-            
-            // Always prompt for configuration
-            Scanner configScanner = new Scanner(System.in);
-            regularOutput.println("\n" + "=".repeat(80));
-            regularOutput.println("KEY BINDING CONFIGURATION");
-            regularOutput.println("=".repeat(80));
-            
             boolean hasExistingBindings = keyConfig.getBinding(KeyBindingConfig.Action.SUBMIT) != null;
-            if (hasExistingBindings) {
-                regularOutput.println("Existing key bindings found.");
-                regularOutput.print("Reconfigure key bindings? (Y/N): ");
-            } else {
-                regularOutput.println("No key bindings found. Configuration is required.");
-                regularOutput.print("Configure key bindings now? (Y/N): ");
-            }
             
-            String response = configScanner.nextLine().trim().toUpperCase();
-            
-            if (response.equals("Y") || response.equals("YES") || !hasExistingBindings) {
-                if (!hasExistingBindings && !response.equals("Y") && !response.equals("YES")) {
-                    regularOutput.println("\nKey binding configuration is mandatory for first-time use.");
-                }
-                try {
-                    KeyBindingSetup setup = new KeyBindingSetup(keyConfig);
-                    setup.setupBindings();
-                } catch (Exception e) {
-                    regularOutput.println("Error setting up key bindings: " + e.getMessage());
-                    regularOutput.println("Cannot continue without key bindings. Exiting.");
-                    return;
+            if (startup.isHeadless()) {
+                if (hasExistingBindings) {
+                    regularOutput.println("Using existing key bindings.");
+                } else {
+                    regularOutput.println("No key bindings saved; run once without --headless to configure them.");
                 }
             } else {
-                regularOutput.println("Using existing key bindings.");
+                // Always prompt for configuration
+                Scanner configScanner = new Scanner(System.in);
+                regularOutput.println("\n" + "=".repeat(80));
+                regularOutput.println("KEY BINDING CONFIGURATION");
+                regularOutput.println("=".repeat(80));
+                
+                if (hasExistingBindings) {
+                    regularOutput.println("Existing key bindings found.");
+                    regularOutput.print("Reconfigure key bindings? (Y/N): ");
+                } else {
+                    regularOutput.println("No key bindings found. Configuration is required.");
+                    regularOutput.print("Configure key bindings now? (Y/N): ");
+                }
+                
+                String response = configScanner.nextLine().trim().toUpperCase();
+                
+                if (response.equals("Y") || response.equals("YES") || !hasExistingBindings) {
+                    if (!hasExistingBindings && !response.equals("Y") && !response.equals("YES")) {
+                        regularOutput.println("\nKey binding configuration is mandatory for first-time use.");
+                    }
+                    try {
+                        KeyBindingSetup setup = new KeyBindingSetup(keyConfig);
+                        setup.setupBindings();
+                    } catch (Exception e) {
+                        regularOutput.println("Error setting up key bindings: " + e.getMessage());
+                        regularOutput.println("Cannot continue without key bindings. Exiting.");
+                        return;
+                    }
+                } else {
+                    regularOutput.println("Using existing key bindings.");
+                }
             }
             
             // Set config on transcript buffer for display
             transcriptBuffer.setKeyConfig(keyConfig);
             
+            llmStage = new PipelineStage<>("llm", 8, PipelineStage.Overflow.DROP_NEWEST, 1, true, Main::processApiRequest);
+            llmStage.start(workers);
+            
             // Initialize global hotkey listener
             try {
+                // One native listener dispatches every hotkey
+                hotkeyDispatcher = new HotkeyDispatcher();
+                hotkeyDispatcher.register();
+                
                 hotkeyListener = new GlobalHotkeyListener() {
                     @Override
                     protected void onHotkeyPressed() {
@@ -191,26 +293,30 @@ public class Main {
                         // You can add more functionality here later
                     }
                 };
-                hotkeyListener.register();
+                hotkeyListener.register(hotkeyDispatcher);
                 
                 // Initialize transcript navigation handler with config
-                navigationHandler = new TranscriptNavigationHandler(transcriptBuffer, Main::processApiRequest, keyConfig);
-                navigationHandler.register();
+                navigationHandler = new TranscriptNavigationHandler(transcriptBuffer, question -> {
+                    if (!llmStage.submit(question)) {
+                        regularOutput.println("Too many questions waiting; dropped: \"" + question + "\"");
+                    }
+                }, keyConfig);
+                navigationHandler.register(hotkeyDispatcher);
             } catch (Exception e) {
                 regularOutput.println("Warning: Could not register global hotkey listeners: " + e.getMessage());
                 // Continue without hotkey support
             }
-            // Google Speech-to-Text streaming setup
-            // Set up credentials with quota project ID
-            SpeechSettings settings = SpeechSettings.newBuilder()
-                    .setQuotaProjectId("bettnet-sporting")
-                    .build();
-            SpeechClient speechClient = SpeechClient.create(settings);
+            SpeechClient speechClient = await(speechStep);
+            RecognizerStreams streams = null;
+            PipelineStage<AudioChunk> vadStage = null;
+            PipelineStage<AudioChunk> sendStage = null;
+            CaptureMonitor captureMonitor = null;
             try {
                 RecognitionConfig recConfig = RecognitionConfig.newBuilder()
                         .setEncoding(RecognitionConfig.AudioEncoding.LINEAR16)
                         .setLanguageCode("en-US")
                         .setSampleRateHertz(16000)
+                        .setEnableWordTimeOffsets(true)
                         .build();
                 StreamingRecognitionConfig config = StreamingRecognitionConfig.newBuilder()
                         .setConfig(recConfig)
@@ -218,269 +324,157 @@ public class Main {
                         .build();
                 
                 regularOutput.println("Capturing audio and streaming to Google Speech-to-Text...");
-                byte[] buffer = new byte[4096];
+                int chunkBytes = Endpointer.FRAME_BYTES * 12; // 120 ms, whole VAD and mute frames
                 microphone.start();
-                
-                // Shared state for response handling
-                final Object responseLock = new Object();
-                final boolean[] hasInterimResult = {false};
-                final Thread[] currentResponseThread = {null};
-                final BidiStream<StreamingRecognizeRequest, StreamingRecognizeResponse>[] currentStream = new BidiStream[]{null};
-                
-                // Response handler that can work with multiple streams
-                Runnable responseHandler = () -> {
-                    BidiStream<StreamingRecognizeRequest, StreamingRecognizeResponse> myStream;
-                    synchronized (responseLock) {
-                        myStream = currentStream[0];
-                    }
-                    
+
+                // Watch for command keys; blocks on stdin rather than polling it
+                workers.fork(() -> {
+                    BufferedReader console = new BufferedReader(new InputStreamReader(System.in));
+                    regularOutput.println("Press 'i' to update system instructions, or 'q' to quit");
+
                     try {
-                        Iterator<StreamingRecognizeResponse> responseIterator = myStream.iterator();
-                        while (responseIterator.hasNext() && !Thread.currentThread().isInterrupted()) {
-                            StreamingRecognizeResponse nextResponse = responseIterator.next();
-
-                            for (StreamingRecognitionResult result : nextResponse.getResultsList()) {
-                                String transcript = result.getAlternatives(0).getTranscript();
-                                boolean isFinal = result.getIsFinal();
-
-                                if (isFinal) {
-                                    // Clear any interim display
-                                    synchronized (responseLock) {
-                                        if (hasInterimResult[0]) {
-                                            regularOutput.print("\r" + " ".repeat(80) + "\r");
-                                            hasInterimResult[0] = false;
-                                        }
-                                    }
+                        String input;
+                        while (!shouldExit && (input = console.readLine()) != null) {
+                            input = input.trim();
 
-                                    // Print final results with clear formatting
-                                    String cleanedTranscript = transcript.trim();
-                                    if (!cleanedTranscript.isEmpty()) {
-                                        // Add to transcript buffer
-                                        transcriptBuffer.addTranscript(cleanedTranscript);
-                                        
-                                        // Output to both regular and AI outputs with better formatting
-                                        String formattedOutput = "USER: " + cleanedTranscript;
-                                        regularOutput.println(formattedOutput);
-
-                                        // Only write to AI output if it's different from regularOutput
-                                        if (aiOutput != regularOutput) {
-                                            aiOutput.println(formattedOutput);
-                                        }
-                                        
-                                        // No longer auto-submitting questions - only submit via CMD+ALT+W
-                                    }
-                                }
-                                else {
-                                    // Show interim results - with better formatting
-                                    synchronized (responseLock) {
-                                        hasInterimResult[0] = true;
+                            // Process the command
+                            if (input.equalsIgnoreCase("i")) {
+                                // Prompt for new system instruction
+                                regularOutput.println("\nEnter new system instruction (press Enter when done):");
+
+                                String newInstruction = console.readLine();
+
+                                if (newInstruction != null && !newInstruction.trim().isEmpty()) {
+                                    // Update the instruction
+                                    String verifiedInstruction = InstructionManager.set(newInstruction.trim(), regularOutput);
+
+                                    // Verify the update worked by retrieving the current value
+                                    regularOutput.println("VERIFICATION - Current system instruction: \"" + InstructionManager.get() + "\"");
+
+                                    if (aiOutput != regularOutput) {
+                                        aiOutput.println("System instruction updated: \"" + verifiedInstruction + "\"");
                                     }
-                                    String interimText = "\rInterim: " + transcript;
-                                    regularOutput.print(interimText);
+                                } else {
+                                    regularOutput.println("Instruction unchanged (empty input)");
                                 }
+
+                                regularOutput.println("\nPress 'i' to update system instructions, or 'q' to quit");
+                            } else if (input.equalsIgnoreCase("q")) {
+                                // The capture loop notices within one read and main shuts down from there
+                                regularOutput.println("Exiting...");
+                                shouldExit = true;
                             }
                         }
-                    } catch (Exception e) {
-                        if (!Thread.currentThread().isInterrupted()) {
-                            regularOutput.println("\nResponse thread error: " + e.getMessage());
-                        }
+                    } catch (IOException e) {
+                        regularOutput.println("Error reading keyboard input: " + e.getMessage());
                     }
-                };
+                });
 
-                // Add a keyboard input handler thread to watch for command keys
-                Thread keyboardThread = new Thread(() -> {
-                    Scanner scanner = new Scanner(System.in);
-                    regularOutput.println("Press 'i' to update system instructions, or 'q' to quit");
+                // Pipeline: capture (this thread) -> VAD -> STT send -> stream readers -> transcript
+                transcriptStage = new PipelineStage<>("transcript", 256, PipelineStage.Overflow.BLOCK, 1, true,
+                        Main::handleRecognized);
+                transcriptStage.start(workers);
+                PipelineStage<RecognizerStreams.Result> results = transcriptStage;
+                streams = new RecognizerStreams(speechClient, config, captureClock, vadSupervisor, sttUsage, workers,
+                        results::submit, regularOutput);
+                streams.open();
+                sendStage = new PipelineStage<>("stt-send", 64, PipelineStage.Overflow.BLOCK, 1, true, streams);
+                sendStage.start(workers);
 
-                    while (!shouldExit) {
-                        try {
-                            // Check if there is input available
-                            if (System.in.available() > 0 || scanner.hasNextLine()) {
-                                // Wait for input
-                                String input = scanner.nextLine().trim();
-
-                                // Process the command
-                                if (input.equalsIgnoreCase("i")) {
-                                    // Prompt for new system instruction
-                                    regularOutput.println("\nEnter new system instruction (press Enter when done):");
-
-                                    // Make sure we can read the next line
-                                    String newInstruction = scanner.nextLine();
-
-                                    if (!newInstruction.trim().isEmpty()) {
-                                        // Update the instruction
-                                        String verifiedInstruction = InstructionManager.set(newInstruction.trim(), regularOutput);
-
-                                        // Verify the update worked by retrieving the current value
-                                        regularOutput.println("VERIFICATION - Current system instruction: \"" + InstructionManager.get() + "\"");
-
-                                        if (aiOutput != regularOutput) {
-                                            aiOutput.println("System instruction updated: \"" + verifiedInstruction + "\"");
-                                        }
-                                    } else {
-                                        regularOutput.println("Instruction unchanged (empty input)");
-                                    }
+                int vadFrames = (chunkBytes + Endpointer.FRAME_BYTES - 1) / Endpointer.FRAME_BYTES;
+                boolean[] voiced = new boolean[vadFrames];
+                boolean[] openFrames = new boolean[(chunkBytes + CaptureClock.FRAME_BYTES - 1) / CaptureClock.FRAME_BYTES];
+                PipelineStage<AudioChunk> send = sendStage;
+                vadStage = new PipelineStage<>("vad", 64, PipelineStage.Overflow.BLOCK, 1, true, chunk -> {
+                    // Run VAD on every chunk in one batch; a short trailing chunk takes the previous decision
+                    int frames = chunk.getFrames();
+                    int wholeFrames = chunk.getLength() / Endpointer.FRAME_BYTES;
+                    chunk.setFallback(vadSupervisor.classify(chunk.getData(), 0, wholeFrames, voiced));
+                    if (wholeFrames < frames) {
+                        voiced[wholeFrames] = wholeFrames > 0 && voiced[wholeFrames - 1];
+                    }
+                    boolean[] sendFrames = chunk.getSend();
+                    boolean anySend = endpointer.process(voiced, frames, sendFrames);
+                    int speechBytes = 0;
+                    int sentBytes = 0;
 
-                                    regularOutput.println("\nPress 'i' to update system instructions, or 'q' to quit");
-                                } else if (input.equalsIgnoreCase("q")) {
-                                    regularOutput.println("Exiting...");
-                                    shouldExit = true;
-                                    System.exit(0);
-                                }
-                            } else {
-                                // Short sleep to prevent CPU hogging
-                                Thread.sleep(100);
-                            }
-                        } catch (Exception e) {
-                            regularOutput.println("Error reading keyboard input: " + e.getMessage());
-                            e.printStackTrace();
-                            // Reset the scanner after an error
-                            scanner = new Scanner(System.in);
+                    // Stream the utterance's frames, leaving out those heard while muted. Muted audio is
+                    // also blanked, so it cannot leave later as pre-roll for a parked stream
+                    muteGate.gate(chunk.getLength(), chunk.getCapturedMillis(), openFrames);
+                    anySend = false;
+                    for (int f = 0; f < frames; f++) {
+                        int from = f * Endpointer.FRAME_BYTES;
+                        int frameBytes = Math.min(chunk.getLength(), from + Endpointer.FRAME_BYTES) - from;
+                        speechBytes += sendFrames[f] ? frameBytes : 0;
+                        if (!openFrames[from / CaptureClock.FRAME_BYTES]) {
+                            sendFrames[f] = false;
+                            Arrays.fill(chunk.getData(), from, from + frameBytes, (byte) 0);
                         }
+                        sentBytes += sendFrames[f] ? frameBytes : 0;
+                        anySend |= sendFrames[f];
                     }
+                    sttUsage.gated(chunk.getLength(), speechBytes, sentBytes);
+                    chunk.setAnySend(anySend);
+                    send.submit(chunk);
                 });
-                keyboardThread.setDaemon(true);
-                keyboardThread.start();
-
-                // Initial stream creation
-                synchronized (responseLock) {
-                    currentStream[0] = speechClient.streamingRecognizeCallable().call();
-                    currentStream[0].send(StreamingRecognizeRequest.newBuilder().setStreamingConfig(config).build());
-                    currentResponseThread[0] = new Thread(responseHandler);
-                    currentResponseThread[0].setDaemon(true);
-                    currentResponseThread[0].start();
-                }
-                
-                // Audio capture loop with VAD
-                byte[] vadBuffer = new byte[320]; // 20ms chunks for VAD
-                boolean inSpeech = false;
-                int silenceCount = 0;
-                long streamStartTime = System.currentTimeMillis();
-                long lastKeepAlive = System.currentTimeMillis();
+                vadStage.start(workers);
+                captureMonitor = new CaptureMonitor(microphone, microphone.getFormat());
+                CaptureMonitor capture = captureMonitor;
+                PipelineStage<?>[] stages = {vadStage, sendStage, transcriptStage, llmStage};
+                startReporter(PIPELINE_STATS_SECONDS, () -> {
+                    printPipelineStats(stages);
+                    regularOutput.println("  " + capture.stats());
+                    printFinalLatency();
+                });
+                startReporter(STT_USAGE_SECONDS, () -> regularOutput.println(sttUsage.rates()));
                 
+                // Audio capture loop; each read is handed to the VAD stage in a buffer of its own
                 while (!shouldExit) {
+                    byte[] buffer = new byte[chunkBytes];
                     int bytesRead = microphone.read(buffer, 0, buffer.length);
                     if (bytesRead > 0) {
-                        // Check VAD for the first chunk to detect speech start/end
-                        boolean currentlySpeaking = false;
-                        if (bytesRead >= 320) {
-                            System.arraycopy(buffer, 0, vadBuffer, 0, 320);
-                            try {
-                                currentlySpeaking = vadChecker.isSpeech(vadBuffer);
-                            } catch (IOException e) {
-                                regularOutput.println("VAD error: " + e.getMessage());
-                                currentlySpeaking = true; // Default to sending audio on VAD error
-                            }
-                        }
-                        
-                        // Update speech state
-                        if (currentlySpeaking) {
-                            if (!inSpeech) {
-//                                regularOutput.println("\n[Speech detected]");
-                            }
-                            inSpeech = true;
-                            silenceCount = 0;
-                        } else if (inSpeech) {
-                            silenceCount++;
-                            // Stop sending after 500ms of silence (25 chunks * 20ms)
-                            if (silenceCount > 25) {
-                                inSpeech = false;
-//                                regularOutput.println("\n[Speech ended]");
-                            }
+                        // Audio the line dropped in an overrun still advances the capture clock
+                        int lostBytes = captureMonitor.afterRead(bytesRead);
+                        if (lostBytes > 0) {
+                            captureClock.captured(lostBytes);
                         }
-                        
-                        // Check if we need to reconnect (50 seconds limit to be safe)
-                        if (System.currentTimeMillis() - streamStartTime > 50000) {
-                            regularOutput.println("\n[Reconnecting stream to avoid timeout...]");
-                            
-                            synchronized (responseLock) {
-                                // Close old stream
-                                if (currentStream[0] != null) {
-                                    try {
-                                        currentStream[0].closeSend();
-                                    } catch (Exception e) {
-                                        // Ignore errors on close
-                                    }
-                                }
-                                
-                                // Interrupt old response thread
-                                if (currentResponseThread[0] != null) {
-                                    currentResponseThread[0].interrupt();
-                                    try {
-                                        currentResponseThread[0].join(1000);
-                                    } catch (InterruptedException e) {
-                                        Thread.currentThread().interrupt();
-                                    }
-                                }
-                                
-                                // Create new stream
-                                try {
-                                    currentStream[0] = speechClient.streamingRecognizeCallable().call();
-                                    currentStream[0].send(StreamingRecognizeRequest.newBuilder().setStreamingConfig(config).build());
-                                    currentResponseThread[0] = new Thread(responseHandler);
-                                    currentResponseThread[0].setDaemon(true);
-                                    currentResponseThread[0].start();
-                                    streamStartTime = System.currentTimeMillis();
-                                    regularOutput.println("[Stream reconnected successfully]");
-                                } catch (Exception e) {
-                                    regularOutput.println("Failed to reconnect stream: " + e.getMessage());
-                                    shouldExit = true;
-                                    break;
-                                }
-                            }
+                        if (!microphone.isOpen()) {
+                            // The monitor could not reopen the line after an overrun; keep what was read and stop
+                            shouldExit = true;
                         }
-                        
-                        // Send audio when in speech mode and not muted
-                        if ((inSpeech || currentlySpeaking) && !isMuted) {
-                            synchronized (responseLock) {
-                                if (currentStream[0] != null) {
-                                    try {
-                                        currentStream[0].send(StreamingRecognizeRequest.newBuilder()
-                                                .setAudioContent(ByteString.copyFrom(buffer, 0, bytesRead))
-                                                .build());
-                                        lastKeepAlive = System.currentTimeMillis();
-                                    } catch (Exception e) {
-                                        regularOutput.println("\nError sending audio: " + e.getMessage());
-                                    }
-                                }
-                            }
-                        } else {
-                            // Send minimal keep-alive audio every 5 seconds during silence
-                            long currentTime = System.currentTimeMillis();
-                            if (currentTime - lastKeepAlive > 5000) {
-                                synchronized (responseLock) {
-                                    if (currentStream[0] != null) {
-                                        try {
-                                            // Send a tiny amount of silence to keep connection alive
-                                            byte[] silence = new byte[320];
-                                            currentStream[0].send(StreamingRecognizeRequest.newBuilder()
-                                                    .setAudioContent(ByteString.copyFrom(silence))
-                                                    .build());
-                                            lastKeepAlive = currentTime;
-                                        } catch (Exception e) {
-                                            // Ignore keep-alive errors
-                                        }
-                                    }
-                                }
+                        // Stamped with when the audio was captured, not when it was read, so backlog in
+                        // the line's buffer does not shift mute windows or transcript times
+                        long captureByte = captureClock.captured(bytesRead, captureMonitor.getCapturedMillis());
+                        if (startupTimeline.firstCapture()) {
+                            startupTimeline.print(regularOutput);
+                            if (startupScope != null) {
+                                startupScope.close();
                             }
                         }
+                        vadStage.submit(new AudioChunk(buffer, bytesRead, captureByte, captureClock.capturedMillis()));
                     }
                 }
-                // Clean up streaming resources
-                synchronized (responseLock) {
-                    if (currentStream[0] != null) {
-                        try {
-                            currentStream[0].closeSend();
-                        } catch (Exception e) {
-                            // Ignore
-                        }
-                    }
-                    if (currentResponseThread[0] != null) {
-                        currentResponseThread[0].interrupt();
-                    }
+            } finally {
+                // Let queued audio through in order, then end the stream
+                if (vadStage != null) {
+                    vadStage.close(PIPELINE_DRAIN_MS);
+                }
+                if (sendStage != null) {
+                    sendStage.close(PIPELINE_DRAIN_MS);
+                }
+                if (streams != null) {
+                    streams.close();
+                    streams.printSummary(regularOutput);
+                }
+                if (transcriptStage != null) {
+                    transcriptStage.close(PIPELINE_DRAIN_MS);
+                }
+                printFinalLatency();
+                printPipelineStats(vadStage, sendStage, transcriptStage, llmStage);
+                if (captureMonitor != null) {
+                    regularOutput.println("  " + captureMonitor.stats());
                 }
                 
-            } finally {
                 // Close speech client
                 if (speechClient != null) {
                     speechClient.close();
@@ -489,15 +483,34 @@ public class Main {
         } catch (Exception e) {
             regularOutput.println("Error: " + e.getMessage());
             e.printStackTrace();
+            startupTimeline.print(regularOutput);
         } finally {
             if (microphone != null && microphone.isOpen()) {
                 microphone.close();
             }
             
+            // A startup step that failed may have left the others' results unused
+            if (startupScope != null) {
+                startupScope.close();
+            }
+            if (speechStep != null && speechStep.isDone()) {
+                try {
+                    speechStep.get().close();
+                } catch (Exception e) {
+                    // It never started, or is already closed
+                }
+            }
+            
+            sttUsage.printSummary(regularOutput);
+            
             // Stop VAD checker
             try {
-                vadChecker.stop();
+                vadSupervisor.stop();
                 regularOutput.println("VAD checker stopped.");
+                if (vadSupervisor.getRestarts() > 0 || vadSupervisor.getUngatedBytes() > 0) {
+                    regularOutput.printf("VAD restarted %d times; %.1f s of audio sent on the energy gate.%n",
+                        vadSupervisor.getRestarts(), vadSupervisor.getUngatedBytes() / 32_000.0);
+                }
             } catch (Exception e) {
                 regularOutput.println("Error stopping VAD: " + e.getMessage());
             }
@@ -517,6 +530,10 @@ public class Main {
                 regularOutput.println("Navigation handler unregistered.");
             }
             
+            if (hotkeyDispatcher != null) {
+                hotkeyDispatcher.unregister();
+            }
+            
             // Unregister GlobalScreen
             try {
                 GlobalScreen.unregisterNativeHook();
@@ -525,15 +542,292 @@ public class Main {
                 regularOutput.println("Error unregistering GlobalScreen: " + e.getMessage());
             }
 
+            if (answerFeed != null) {
+                try {
+                    answerFeed.close();
+                } catch (IOException e) {
+                    regularOutput.println("Error closing answer feed: " + e.getMessage());
+                }
+            }
+
+            if (llmStage != null) {
+                llmStage.close(0);
+            }
+            workers.close();
+
             // Close output streams if they were separately created
             if (separateAiOutput && aiOutput != System.out) {
                 aiOutput.close();
             }
         }
+
+        // Everything is closed; exit ends the threads that would keep the JVM up (the transcript
+        // store's executor among them) and runs the remaining shutdown hooks. Not when a signal
+        // already started the shutdown, where exit would block until the hook gave up waiting
+        sessionEnded = true;
+        if (!shuttingDown) {
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Runs a startup step on the startup executor, or right here when starting interactively.
+     */
+    private static <T> Future<T> startupStep(String name, Callable<T> step) {
+        FutureTask<T> task = new FutureTask<>(() -> startupTimeline.time(name, step));
+        if (startupScope != null) {
+            startupScope.fork(task);
+        } else {
+            task.run();
+        }
+        return task;
+    }
+
+    /**
+     * Waits for a startup step and rethrows what it failed with.
+     */
+    private static <T> T await(Future<T> step) throws Exception {
+        try {
+            return step.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Picks the input device (from the startup options, or by prompting) and opens it.
+     */
+    private static TargetDataLine openMicrophone(StartupConfig startup) throws LineUnavailableException {
+        // List available mixers and their target lines
+        Mixer.Info[] mixers = AudioSystem.getMixerInfo();
+        regularOutput.println("Available audio input devices:");
+
+        List<Mixer.Info> inputDevices = new ArrayList<>();
+        for(Mixer.Info mxr:mixers) {
+            Mixer mixer = AudioSystem.getMixer(mxr);
+            Line.Info[] targetLineInfo = mixer.getTargetLineInfo();
+            if (targetLineInfo.length > 0) {
+                inputDevices.add(mxr);
+                regularOutput.println(inputDevices.size() - 1 + ": " + mxr.getName() + " - " + mxr.getDescription());
+            }
+        }
+
+        int deviceIndex = -1;
+        if (startup.getDevice() != null) {
+            deviceIndex = findDevice(inputDevices, startup.getDevice());
+            if (deviceIndex < 0) {
+                throw new LineUnavailableException("No input device matches \"" + startup.getDevice() + "\"");
+            }
+        } else if (startup.isHeadless()) {
+            if (inputDevices.isEmpty()) {
+                throw new LineUnavailableException("No input devices found");
+            }
+            deviceIndex = 0;
+        } else {
+            // Prompt user to select an input device
+            regularOutput.println("\nEnter the number of the input device to use:");
+            Scanner deviceScanner = new Scanner(System.in);
+            while (deviceIndex < 0 || deviceIndex >= inputDevices.size()) {
+                try {
+                    String input = deviceScanner.nextLine().trim();
+                    deviceIndex = Integer.parseInt(input);
+                    if (deviceIndex < 0 || deviceIndex >= inputDevices.size()) {
+                        regularOutput.println("Invalid selection. Please enter a number between 0 and " + (inputDevices.size() - 1));
+                    }
+                } catch (NumberFormatException e) {
+                    regularOutput.println("Please enter a valid number");
+                }
+            }
+        }
+
+        Mixer.Info micInput = inputDevices.get(deviceIndex);
+        regularOutput.println("Selected input device: " + micInput.getName());
+
+        Mixer micMixer = AudioSystem.getMixer(micInput);
+        // Get the first available TargetDataLine from the selected mixer
+        Line.Info[] targetLineInfos = micMixer.getTargetLineInfo();
+        TargetDataLine microphone = (TargetDataLine) micMixer.getLine(targetLineInfos[0]);
+        // Audio format setup
+        AudioFormat format = new AudioFormat(16000, 16, 1, true, false);
+        Long bufferMillis = Long.getLong("capture.buffer.ms"); // Unset = the line's default; grows on overruns
+        if (bufferMillis != null) {
+            microphone.open(format, (int) (bufferMillis * 16) * format.getFrameSize());
+        } else {
+            microphone.open(format);
+        }
+        return microphone;
+    }
+
+    /**
+     * @return The device at a list number, else the first whose name contains {@code choice}, else -1
+     */
+    private static int findDevice(List<Mixer.Info> devices, String choice) {
+        try {
+            int index = Integer.parseInt(choice.trim());
+            return index >= 0 && index < devices.size() ? index : -1;
+        } catch (NumberFormatException e) {
+            String wanted = choice.toLowerCase();
+            for (int i = 0; i < devices.size(); i++) {
+                if (devices.get(i).getName().toLowerCase().contains(wanted)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Opens a connection to the LLM API so DNS and TLS are done before the first question;
+     * HttpURLConnection keeps it alive for the request that follows.
+     */
+    private static void warmUpLlm() throws IOException {
+        if (CEREBRAS_API_KEY == null || CEREBRAS_API_KEY.isEmpty()) {
+            return;
+        }
+        HttpURLConnection connection = (HttpURLConnection) new URL("https://api.cerebras.ai/v1/models").openConnection();
+        connection.setRequestProperty("Authorization", "Bearer " + CEREBRAS_API_KEY);
+        connection.setConnectTimeout(10000);
+        connection.setReadTimeout(10000);
+        int code = connection.getResponseCode();
+        // Drain the body so the connection goes back to the keep-alive cache
+        try (InputStream body = code < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (body != null) {
+                body.readAllBytes();
+            }
+        }
+    }
+
+    /**
+     * Transcript stage handler: files a recognizer result in the transcript and passes finals on.
+     */
+    private static void handleRecognized(RecognizerStreams.Result recognized) {
+        StreamingRecognitionResult result = recognized.getResult();
+        SpeechRecognitionAlternative alternative = result.getAlternatives(0);
+        String transcript = alternative.getTranscript();
+        int streamId = recognized.getStreamId();
+
+        if (result.getIsFinal()) {
+            // Print final results with clear formatting
+            String cleanedTranscript = transcript.trim();
+            if (!cleanedTranscript.isEmpty()) {
+                // Add to transcript buffer
+                PipelineEvents.FinalTranscript event = new PipelineEvents.FinalTranscript();
+                event.begin();
+                long startOffset = recognized.getStartOffsetMillis();
+                long endOffset = recognized.getEndOffsetMillis();
+                long startMillis = captureClock.wallMillisAt(streamId, startOffset);
+                long endMillis = captureClock.wallMillisAt(streamId, endOffset);
+                int mutedMillis = startMillis == TranscriptTimeline.UNKNOWN || endMillis == TranscriptTimeline.UNKNOWN
+                        ? TranscriptTimeline.UNKNOWN
+                        : (int) muteGate.mutedMillisBetween(startMillis, endMillis);
+                transcriptBuffer.addTranscript(cleanedTranscript,
+                        startMillis,
+                        endMillis,
+                        alternative.getConfidence(),
+                        captureClock.frameAt(streamId, startOffset),
+                        captureClock.frameAt(streamId, endOffset),
+                        streamId,
+                        mutedMillis);
+                long latency = endMillis == TranscriptTimeline.UNKNOWN ? 0 : System.currentTimeMillis() - endMillis;
+                if (endMillis != TranscriptTimeline.UNKNOWN) {
+                    recordFinalLatency(latency);
+                }
+                if (event.shouldCommit()) {
+                    event.streamId = streamId;
+                    event.characters = cleanedTranscript.length();
+                    event.confidence = alternative.getConfidence();
+                    event.speech = endOffset - startOffset;
+                    event.latency = latency;
+                    event.commit();
+                }
+
+                // Output to both regular and AI outputs with better formatting
+                String formattedOutput = "USER: " + cleanedTranscript;
+                regularOutput.println(formattedOutput);
+
+                // Only write to AI output if it's different from regularOutput
+                if (aiOutput != regularOutput) {
+                    aiOutput.println(formattedOutput);
+                }
+                if (answerFeed != null) {
+                    answerFeed.publish(AnswerFeed.TRANSCRIPT, 0, cleanedTranscript);
+                }
+
+                // No longer auto-submitting questions - only submit via CMD+ALT+W
+            } else {
+                // Nothing final to show; drop the provisional entry
+                transcriptBuffer.setInterim(null);
+            }
+        } else {
+            // Interim results fill the buffer's provisional slot; the final replaces it
+            transcriptBuffer.setInterim(transcript);
+        }
+    }
+
+    /**
+     * Runs a status report every {@code seconds}, if that is positive.
+     */
+    private static void startReporter(int seconds, Runnable report) {
+        if (seconds <= 0) {
+            return;
+        }
+        workers.fork(() -> {
+            try {
+                while (!shouldExit) {
+                    Thread.sleep(seconds * 1000L);
+                    report.run();
+                }
+            } catch (InterruptedException e) {
+                // Shutting down
+            }
+        });
+    }
+
+    private static synchronized void recordFinalLatency(long latency) {
+        finalLatencyCount++;
+        finalLatencyTotal += latency;
+        finalLatencyMax = Math.max(finalLatencyMax, latency);
+    }
+
+    /**
+     * Prints the mean and max time from local end of speech to final transcript so far.
+     */
+    private static synchronized void printFinalLatency() {
+        if (finalLatencyCount > 0) {
+            regularOutput.printf("Speech end to final transcript: mean %d ms, max %d ms over %d finals (stt.finalize=%s)%n",
+                finalLatencyTotal / finalLatencyCount, finalLatencyMax, finalLatencyCount,
+                System.getProperty("stt.finalize", "google"));
+        }
+    }
+
+    private static void printPipelineStats(PipelineStage<?>... stages) {
+        regularOutput.println("Pipeline stages:");
+        for (PipelineStage<?> stage : stages) {
+            if (stage != null) {
+                regularOutput.println("  " + stage.stats());
+            }
+        }
+        if (aiLog != null) {
+            regularOutput.println("  " + aiLog.stats());
+        }
+    }
+
+    private static void commitPhase(PipelineEvents.LlmPhase event, String phase, long bytes, int status) {
+        if (event.shouldCommit()) {
+            event.phase = phase;
+            event.bytes = bytes;
+            event.status = status;
+            event.commit();
+        }
     }
 
     private static void processApiRequest(String question) {
         // Implement proper rate limiting
+        PipelineEvents.LlmPhase rateLimit = new PipelineEvents.LlmPhase();
+        rateLimit.begin();
         long currentTime = System.currentTimeMillis();
         if (currentTime - lastRequestTime < RATE_LIMIT_MS) {
             try {
@@ -544,6 +838,7 @@ public class Main {
             }
         }
         lastRequestTime = System.currentTimeMillis();
+        commitPhase(rateLimit, "rate limit", 0, 0);
 
         // Log that we're making an API request
         regularOutput.println("Processing request: \"" + question + "\"");
@@ -551,6 +846,7 @@ public class Main {
             aiOutput.println("Processing request: \"" + question + "\"");
         }
 
+        int answerId = answerFeed != null ? answerFeed.nextAnswerId() : 0;
         try {
             String apiResponse;
             //openAi is disabled because it is too slow. You might have a usecase that does not care about latency.
@@ -564,6 +860,9 @@ public class Main {
                 if (aiOutput != regularOutput) {
                     aiOutput.println("ERROR: No API keys available for OpenAI or Cerebras");
                 }
+                if (answerFeed != null) {
+                    answerFeed.publish(AnswerFeed.ANSWER_ERROR, answerId, "No API keys available for OpenAI or Cerebras");
+                }
                 return;
             }
 
@@ -572,12 +871,20 @@ public class Main {
             if (aiOutput != regularOutput) {
                 aiOutput.println("AI: " + apiResponse);
             }
+            // The completion arrives in one piece, so it is a single token event
+            if (answerFeed != null) {
+                answerFeed.publish(AnswerFeed.ANSWER_TOKEN, answerId, apiResponse);
+                answerFeed.publish(AnswerFeed.ANSWER_COMPLETE, answerId, "");
+            }
         } catch (Exception e) {
             String errorMsg = "Error processing API request: " + e.getMessage();
             regularOutput.println(errorMsg);
             if (aiOutput != regularOutput) {
                 aiOutput.println(errorMsg);
             }
+            if (answerFeed != null) {
+                answerFeed.publish(AnswerFeed.ANSWER_ERROR, answerId, String.valueOf(e.getMessage()));
+            }
             e.printStackTrace();
         }
     }
@@ -661,6 +968,8 @@ public class Main {
         // Check if we should actually make the API request
         if (ENABLE_API_REQUESTS) {
             // Only set up the connection and make the actual API call if enabled
+            PipelineEvents.LlmPhase send = new PipelineEvents.LlmPhase();
+            send.begin();
             URL url = new URL("https://api.cerebras.ai/v1/chat/completions");
             HttpURLConnection connection = (HttpURLConnection) url.openConnection();
             connection.setRequestMethod("POST");
@@ -671,13 +980,17 @@ public class Main {
             connection.setReadTimeout(30000);    // 30 seconds read timeout
 
             // Send the request
+            byte[] input = jsonInputString.getBytes(StandardCharsets.UTF_8);
             try (OutputStream os = connection.getOutputStream()) {
-                byte[] input = jsonInputString.getBytes(StandardCharsets.UTF_8);
                 os.write(input, 0, input.length);
             }
+            commitPhase(send, "send", input.length, 0);
 
             // Check if the request was successful
+            PipelineEvents.LlmPhase wait = new PipelineEvents.LlmPhase();
+            wait.begin();
             int responseCode = connection.getResponseCode();
+            commitPhase(wait, "wait", 0, responseCode);
             if (responseCode != HttpURLConnection.HTTP_OK) {
                 BufferedReader errorReader = new BufferedReader(new InputStreamReader(
                         connection.getErrorStream(), StandardCharsets.UTF_8));
@@ -691,6 +1004,8 @@ public class Main {
             }
 
             // Read the successful response
+            PipelineEvents.LlmPhase read = new PipelineEvents.LlmPhase();
+            read.begin();
             StringBuilder response = new StringBuilder();
             try (BufferedReader br = new BufferedReader(new InputStreamReader(
                     connection.getInputStream(), StandardCharsets.UTF_8))) {
@@ -699,6 +1014,7 @@ public class Main {
                     response.append(responseLine.trim());
                 }
             }
+            commitPhase(read, "read", response.length(), responseCode);
 
             // Parse the JSON response to extract the completion
             String jsonResponse = response.toString();
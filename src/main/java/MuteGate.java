@@ -0,0 +1,96 @@
+/**
+ * Applies push-to-mute to captured audio frame by frame, by the time each frame was heard.
+ *
+ * Mute changes are stamped with the key event's time rather than when the capture loop
+ * next looks, so a read that straddles a press or release is split at 20 ms frame
+ * boundaries: frames captured after the mute instant are dropped even though they were
+ * already read, and frames after the release go out with that same read. Every interval
+ * is kept in a fixed ring so transcripts can be checked against what was muted.
+ */
+public class MuteGate {
+    private static final int BYTES_PER_MILLI = 32; // 16 kHz, 16-bit mono
+    private static final int HISTORY = 1024;
+
+    // Ring of mute intervals in wall-clock millis, oldest first, guarded by this
+    private final long[] startMillis = new long[HISTORY];
+    private final long[] endMillis = new long[HISTORY];
+    private int count = 0;
+    private volatile boolean muted = false;
+
+    /**
+     * Starts or ends a mute interval at {@code atMillis}. Repeated calls with the same state are ignored.
+     */
+    public synchronized void setMuted(boolean muted, long atMillis) {
+        if (muted == this.muted) {
+            return;
+        }
+        if (muted) {
+            int slot = count++ % HISTORY;
+            startMillis[slot] = atMillis;
+            endMillis[slot] = Long.MAX_VALUE; // Open until released
+        } else {
+            int slot = (count - 1) % HISTORY;
+            endMillis[slot] = Math.max(atMillis, startMillis[slot]);
+        }
+        this.muted = muted;
+    }
+
+    public boolean isMuted() {
+        return muted;
+    }
+
+    /**
+     * Marks which frames of a read may be sent. Frames are {@link CaptureClock#FRAME_BYTES}
+     * long (the last may be shorter) and a frame is muted when its midpoint falls in a
+     * mute interval.
+     *
+     * @param bytes Length of the read
+     * @param capturedMillis When the last byte of the read was captured, not when the read returned
+     * @param open Receives true for each frame that may be sent; at least as long as the frame count
+     * @return The number of frames in the read
+     */
+    public synchronized int gate(int bytes, long capturedMillis, boolean[] open) {
+        int frames = (bytes + CaptureClock.FRAME_BYTES - 1) / CaptureClock.FRAME_BYTES;
+        long readStart = capturedMillis - bytes / BYTES_PER_MILLI;
+        int oldest = Math.max(0, count - HISTORY);
+        for (int f = 0; f < frames; f++) {
+            int from = f * CaptureClock.FRAME_BYTES;
+            int to = Math.min(bytes, from + CaptureClock.FRAME_BYTES);
+            long midpoint = capturedMillis - (bytes - (from + to) / 2) / BYTES_PER_MILLI;
+            boolean frameOpen = true;
+
+            // Intervals are in time order; only those reaching into this read can matter
+            for (int i = count - 1; i >= oldest; i--) {
+                int slot = i % HISTORY;
+                if (endMillis[slot] < readStart) {
+                    break;
+                }
+                if (startMillis[slot] <= midpoint && midpoint < endMillis[slot]) {
+                    frameOpen = false;
+                    break;
+                }
+            }
+            open[f] = frameOpen;
+        }
+        return frames;
+    }
+
+    /**
+     * @return How many milliseconds between {@code fromMillis} and {@code toMillis} were muted,
+     *         as far back as the interval history reaches
+     */
+    public synchronized long mutedMillisBetween(long fromMillis, long toMillis) {
+        long total = 0;
+        long now = System.currentTimeMillis();
+        int oldest = Math.max(0, count - HISTORY);
+        for (int i = count - 1; i >= oldest; i--) {
+            int slot = i % HISTORY;
+            long end = endMillis[slot] == Long.MAX_VALUE ? now : endMillis[slot];
+            if (end < fromMillis) {
+                break;
+            }
+            total += Math.max(0, Math.min(end, toMillis) - Math.max(startMillis[slot], fromMillis));
+        }
+        return total;
+    }
+}
@@ -0,0 +1,169 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder events for the audio, recognizer, hotkey, LLM and persistence paths, so
+ * one recording lines pipeline latency up against GC and lock contention.
+ *
+ * Call sites follow the usual JFR pattern: create, {@code begin()}, do the work, then fill
+ * in fields and {@code commit()} only if {@code shouldCommit()}. With recording off that
+ * check is false and the event object is optimized away, so the hot paths pay nothing.
+ * Stack traces are off; the event's own fields say where it came from.
+ */
+public final class PipelineEvents {
+    private PipelineEvents() {
+    }
+
+    @Name("interview.VadBatch")
+    @Label("VAD Batch")
+    @Category({"Interview Assistant", "Audio"})
+    @Description("One batch of 10 ms frames classified by the VAD")
+    @StackTrace(false)
+    public static final class VadBatch extends Event {
+        @Label("Frames")
+        public int frames;
+
+        @Label("Voiced Frames")
+        public int voiced;
+
+        @Label("Energy Gate Fallback")
+        @Description("Decided by the energy gate because the VAD process was down")
+        public boolean fallback;
+    }
+
+    @Name("interview.CaptureOverrun")
+    @Label("Capture Overrun")
+    @Category({"Interview Assistant", "Audio"})
+    @Description("The microphone line's buffer filled up and the device dropped audio")
+    @StackTrace(false)
+    public static final class CaptureOverrun extends Event {
+        @Label("Lost Frames")
+        public long lostFrames;
+
+        @Label("Line Buffer")
+        @DataAmount
+        public int bufferBytes;
+
+        @Label("Fill")
+        @Description("Share of the line buffer in use after the read")
+        public double fill;
+    }
+
+    @Name("interview.SttSend")
+    @Label("STT Send")
+    @Category({"Interview Assistant", "Speech-to-Text"})
+    @Description("One run of audio frames sent on a recognizer stream")
+    @StackTrace(false)
+    public static final class SttSend extends Event {
+        @Label("Stream Id")
+        public int streamId;
+
+        @Label("Audio")
+        @DataAmount
+        public int bytes;
+
+        @Label("Capture Lag")
+        @Description("Time from capturing the audio to sending it")
+        @Timespan(Timespan.MILLISECONDS)
+        public long captureLag;
+    }
+
+    @Name("interview.StreamRotation")
+    @Label("Stream Rotation")
+    @Category({"Interview Assistant", "Speech-to-Text"})
+    @Description("A recognizer stream closed and replaced before its time limit, parked while idle, reopened, or half-closed at the end of an utterance")
+    @StackTrace(false)
+    public static final class StreamRotation extends Event {
+        @Label("Reason")
+        @Description("rotation, park, unpark or finalize")
+        public String reason;
+
+        @Label("Old Stream Id")
+        public int oldStreamId;
+
+        @Label("New Stream Id")
+        public int newStreamId;
+
+        @Label("Succeeded")
+        public boolean succeeded;
+    }
+
+    @Name("interview.FinalTranscript")
+    @Label("Final Transcript")
+    @Category({"Interview Assistant", "Speech-to-Text"})
+    @Description("A final recognizer result added to the transcript")
+    @StackTrace(false)
+    public static final class FinalTranscript extends Event {
+        @Label("Stream Id")
+        public int streamId;
+
+        @Label("Characters")
+        public int characters;
+
+        @Label("Confidence")
+        public float confidence;
+
+        @Label("Speech")
+        @Timespan(Timespan.MILLISECONDS)
+        public long speech;
+
+        @Label("Latency")
+        @Description("Time from the end of the speech to the transcript")
+        @Timespan(Timespan.MILLISECONDS)
+        public long latency;
+    }
+
+    @Name("interview.HotkeyAction")
+    @Label("Hotkey Action")
+    @Category({"Interview Assistant", "Hotkeys"})
+    @Description("A navigation action run by the action queue, with repeated presses folded together")
+    @StackTrace(false)
+    public static final class HotkeyAction extends Event {
+        @Label("Action")
+        public String action;
+
+        @Label("Presses")
+        public int presses;
+
+        @Label("Batch Size")
+        @Description("Actions drained from the queue together")
+        public int batchSize;
+    }
+
+    @Name("interview.LlmPhase")
+    @Label("LLM Request Phase")
+    @Category({"Interview Assistant", "LLM"})
+    @Description("One phase of an LLM request: rate limit, send, wait or read")
+    @StackTrace(false)
+    public static final class LlmPhase extends Event {
+        @Label("Phase")
+        public String phase;
+
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+
+        @Label("Status")
+        public int status;
+    }
+
+    @Name("interview.TranscriptPersist")
+    @Label("Transcript Persist")
+    @Category({"Interview Assistant", "Transcript"})
+    @Description("A group commit of transcript journal or timeline records")
+    @StackTrace(false)
+    public static final class TranscriptPersist extends Event {
+        @Label("File")
+        public String file;
+
+        @Label("Written")
+        @DataAmount
+        public long bytes;
+    }
+}
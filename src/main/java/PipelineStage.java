@@ -0,0 +1,190 @@
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * One step of the audio-to-answer pipeline: a bounded queue drained by a fixed number of workers.
+ *
+ * What happens when the queue is full is the stage's overflow policy: block the producer,
+ * drop the new item, or drop the oldest queued item to make room. Capacity, policy and
+ * thread count can be overridden with {@code pipeline.<name>.capacity},
+ * {@code pipeline.<name>.overflow} and {@code pipeline.<name>.threads}; stages whose
+ * handler keeps state between items are ordered and always run on one thread.
+ *
+ * Every stage counts what went in, what was handled, what was dropped and what failed,
+ * and keeps its queue depth (current and peak) and service time (mean and max), so
+ * {@link #stats()} shows where a backlog builds up.
+ *
+ * @param <T> Item type
+ */
+public class PipelineStage<T> {
+    public enum Overflow {
+        BLOCK,
+        DROP_NEWEST,
+        DROP_OLDEST
+    }
+
+    private final String name;
+    private final BlockingQueue<T> queue;
+    private final int capacity;
+    private final Overflow overflow;
+    private final int threads;
+    private final Consumer<T> handler;
+    private WorkerScope scope;
+    private volatile boolean accepting = true;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong serviceNanos = new AtomicLong();
+    private final AtomicLong maxServiceNanos = new AtomicLong();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final AtomicInteger busy = new AtomicInteger();
+
+    /**
+     * @param name Stage name, used for its threads, properties and stats
+     * @param capacity Default queue capacity
+     * @param overflow Default policy when the queue is full
+     * @param threads Default number of workers; ignored for ordered stages
+     * @param ordered True if items must be handled one at a time in order
+     * @param handler Handles one item; runs on the stage's workers
+     */
+    public PipelineStage(String name, int capacity, Overflow overflow, int threads, boolean ordered, Consumer<T> handler) {
+        this.name = name;
+        this.capacity = Math.max(1, Integer.getInteger("pipeline." + name + ".capacity", capacity));
+        this.overflow = Overflow.valueOf(System.getProperty("pipeline." + name + ".overflow", overflow.name()));
+        this.threads = ordered ? 1 : Math.max(1, Integer.getInteger("pipeline." + name + ".threads", threads));
+        this.queue = new ArrayBlockingQueue<>(this.capacity);
+        this.handler = handler;
+    }
+
+    /**
+     * Starts the workers in a child of {@code workers}.
+     */
+    public void start(WorkerScope workers) {
+        scope = workers.child(name);
+        for (int i = 0; i < threads; i++) {
+            scope.fork(this::work);
+        }
+    }
+
+    /**
+     * Queues an item according to the overflow policy.
+     *
+     * @return False if the item was dropped (or the stage is closed)
+     */
+    public boolean submit(T item) {
+        if (!accepting) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        switch (overflow) {
+            case BLOCK:
+                try {
+                    queue.put(item);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.incrementAndGet();
+                    return false;
+                }
+                break;
+            case DROP_NEWEST:
+                if (!queue.offer(item)) {
+                    dropped.incrementAndGet();
+                    return false;
+                }
+                break;
+            case DROP_OLDEST:
+                while (!queue.offer(item)) {
+                    if (queue.poll() != null) {
+                        dropped.incrementAndGet();
+                    }
+                }
+                break;
+        }
+        submitted.incrementAndGet();
+        maxDepth.accumulateAndGet(queue.size(), Math::max);
+        return true;
+    }
+
+    private void work() {
+        while (true) {
+            T item;
+            try {
+                item = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            busy.incrementAndGet();
+            long start = System.nanoTime();
+            try {
+                handler.accept(item);
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                System.err.println("Pipeline stage " + name + " failed on an item: " + e.getMessage());
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                serviceNanos.addAndGet(elapsed);
+                maxServiceNanos.accumulateAndGet(elapsed, Math::max);
+                processed.incrementAndGet();
+                busy.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Stops taking items, lets the workers finish what is queued (for up to {@code drainMillis})
+     * and then stops them.
+     */
+    public void close(long drainMillis) {
+        accepting = false;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainMillis);
+        while ((!queue.isEmpty() || busy.get() > 0) && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (scope != null) {
+            scope.close();
+        }
+        dropped.addAndGet(queue.size());
+        queue.clear();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getDepth() {
+        return queue.size();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    /**
+     * @return Mean time a worker spent on one item, in microseconds
+     */
+    public double getMeanServiceMicros() {
+        long count = processed.get();
+        return count == 0 ? 0 : serviceNanos.get() / 1_000.0 / count;
+    }
+
+    public String stats() {
+        return String.format("%-10s depth %d/%d (peak %d)  in %,d  done %,d  dropped %,d  failed %,d  service mean %.0f us, max %.1f ms  [%s, %d thread%s]",
+            name, queue.size(), capacity, maxDepth.get(), submitted.get(), processed.get(), dropped.get(), failed.get(),
+            getMeanServiceMicros(), maxServiceNanos.get() / 1_000_000.0, overflow, threads, threads == 1 ? "" : "s");
+    }
+}
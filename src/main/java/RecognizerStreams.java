@@ -0,0 +1,740 @@
+import com.google.api.gax.rpc.BidiStream;
+import com.google.cloud.speech.v1.SpeechClient;
+import com.google.cloud.speech.v1.SpeechRecognitionAlternative;
+import com.google.cloud.speech.v1.StreamingRecognitionConfig;
+import com.google.cloud.speech.v1.StreamingRecognitionResult;
+import com.google.cloud.speech.v1.StreamingRecognizeRequest;
+import com.google.cloud.speech.v1.StreamingRecognizeResponse;
+import com.google.protobuf.ByteString;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * The recognizer end of the pipeline: sends gated audio and hands back what comes out.
+ *
+ * {@link #accept(AudioChunk)} is the handler of the STT send stage, so every send, keep-alive
+ * and stream rotation happens on that one thread and needs no lock. Each stream's responses
+ * are read on a worker of its own, in a scope per stream, and passed on as {@link Result}s
+ * for the transcript stage.
+ *
+ * After {@code stt.park.idle.ms} without speech the stream is parked: closed, with no
+ * keep-alives or rotations, while the last {@code stt.park.preroll.ms} of audio is kept in
+ * a ring. The next chunk with speech reopens a stream on the client's already-connected
+ * channel and sends the pre-roll ahead of it. Reopen times are tracked; if reopening keeps
+ * going over {@code stt.park.reopen.budget.ms}, parking is switched off for the session.
+ *
+ * A stream that is retired (rotated, parked or finalized) is only half-closed; its reader
+ * carries on until the recognizer has sent the last results, for up to {@code stt.drain.ms}.
+ * With {@code stt.finalize=local} the stream is also retired as soon as the endpointer ends
+ * an utterance, which makes the recognizer finalize it at once, and a new stream is opened
+ * straight away for the next one.
+ *
+ * If a stream fails (a send throws, its call ends, or a new stream cannot be opened) the
+ * session carries on: speech is spooled to disk in an {@link AudioSpool} while reconnects are
+ * tried with doubling backoff, and once a stream is back the spool is replayed at
+ * {@code stt.replay.speed} times real time, with live speech queued behind it, so what was
+ * said during the outage still reaches the transcript. A reconnect only counts once the new
+ * stream has answered; until then the backoff keeps growing, and speech keeps going through
+ * the spool. Replayed audio stays spooled until a result's end offset covers it or its
+ * stream finishes cleanly, and is sent again if the stream fails first.
+ */
+public class RecognizerStreams implements Consumer<AudioChunk> {
+    private static final long ROTATE_MS = 50_000; // Streams are cut off at about a minute
+    private static final long KEEP_ALIVE_MS = 5_000;
+    private static final long PARK_IDLE_MS = Long.getLong("stt.park.idle.ms", 15_000); // 0 = never park
+    private static final int PREROLL_BYTES = Math.max(Endpointer.FRAME_BYTES, Integer.getInteger("stt.park.preroll.ms", 300) * 32);
+    private static final long REOPEN_BUDGET_MS = Long.getLong("stt.park.reopen.budget.ms", 300);
+    private static final int OVER_BUDGET_LIMIT = 3; // Reopens in a row over budget before parking is given up
+    // "local" half-closes the stream when the endpointer ends an utterance; "google" waits for the recognizer's own
+    private static final boolean LOCAL_FINALIZE = "local".equalsIgnoreCase(System.getProperty("stt.finalize", "google"));
+    private static final long DRAIN_MS = Long.getLong("stt.drain.ms", 5_000);
+    private static final long SPOOL_MAX_BYTES = Long.getLong("stt.spool.max.bytes", 64L * 1024 * 1024); // About half an hour
+    private static final int REPLAY_SPEED = Math.max(1, Integer.getInteger("stt.replay.speed", 4));
+    private static final long RECONNECT_MIN_MS = 500;
+    private static final long RECONNECT_MAX_MS = 30_000;
+    private static final long REPLAY_SEED_MS = 120; // One capture read, so the first replay sends something
+
+    /**
+     * One recognizer result, with its offsets into the stream that produced it.
+     */
+    public static final class Result {
+        private final int streamId;
+        private final StreamingRecognitionResult result;
+        private final long startOffsetMillis;
+        private final long endOffsetMillis;
+
+        Result(int streamId, StreamingRecognitionResult result, long startOffsetMillis, long endOffsetMillis) {
+            this.streamId = streamId;
+            this.result = result;
+            this.startOffsetMillis = startOffsetMillis;
+            this.endOffsetMillis = endOffsetMillis;
+        }
+
+        public int getStreamId() {
+            return streamId;
+        }
+
+        public StreamingRecognitionResult getResult() {
+            return result;
+        }
+
+        public long getStartOffsetMillis() {
+            return startOffsetMillis;
+        }
+
+        public long getEndOffsetMillis() {
+            return endOffsetMillis;
+        }
+    }
+
+    /**
+     * One stream's call, as the send stage and the stream's reader see it.
+     */
+    private static final class Call {
+        private final WorkerScope scope;
+        private long drainDeadline;
+        private long sentBytes = 0; // Audio sent on the stream, send stage only
+        // Stream offset (ms) at which each replayed run not yet acknowledged ends, send stage only
+        private final Deque<Long> replayedEnds = new ArrayDeque<>();
+        // Set by the reader
+        private volatile boolean responded = false;
+        private volatile long heardMillis = 0; // Furthest result end offset
+        private volatile boolean ended = false;
+        private volatile boolean failed = false; // Ended in an error, was cut off, or failed a send
+
+        Call(WorkerScope scope) {
+            this.scope = scope;
+        }
+    }
+
+    private final SpeechClient client;
+    private final StreamingRecognitionConfig config;
+    private final CaptureClock captureClock;
+    private final VADSupervisor vad;
+    private final SttUsage usage;
+    private final WorkerScope workers;
+    private final Consumer<Result> results;
+    private final PrintStream out;
+
+    // Send stage state
+    private BidiStream<StreamingRecognizeRequest, StreamingRecognizeResponse> stream;
+    private int streamId;
+    private Call call;
+    private long streamStartTime;
+    private long lastKeepAlive;
+    private long lastSpeech;
+    private boolean speechSinceFinalize = false;
+    private int finalizations = 0;
+
+    // Half-closed streams whose readers are still taking final results, oldest first
+    private final Deque<Call> draining = new ArrayDeque<>();
+
+    // Parking, also send stage state
+    private final ByteRingBuffer preRoll = new ByteRingBuffer(PREROLL_BYTES);
+    private boolean parking = PARK_IDLE_MS > 0;
+    private boolean parked = false;
+    private int parks = 0;
+    private int reopens = 0;
+    private int overBudgetRun = 0;
+    private long reopenMillisTotal = 0;
+    private long reopenMillisMax = 0;
+
+    // Outages, also send stage state
+    private boolean down = false;
+    private boolean recovering = false; // Reconnected, but the new stream has not answered yet
+    private long nextReconnect = 0;
+    private long reconnectDelay = RECONNECT_MIN_MS;
+    private long lastReplay = 0;
+    private AudioSpool spool; // Created at the first outage
+    private boolean replaying = false;
+    private final Deque<Call> unacknowledged = new ArrayDeque<>(); // Streams with replayed runs in flight, oldest first
+    private int outages = 0;
+
+    /**
+     * @param results Receives every result; called on the stream's reader thread
+     */
+    public RecognizerStreams(SpeechClient client, StreamingRecognitionConfig config, CaptureClock captureClock,
+                             VADSupervisor vad, SttUsage usage, WorkerScope workers, Consumer<Result> results,
+                             PrintStream out) {
+        this.client = client;
+        this.config = config;
+        this.captureClock = captureClock;
+        this.vad = vad;
+        this.usage = usage;
+        this.workers = workers;
+        this.results = results;
+        this.out = out;
+    }
+
+    /**
+     * Opens a stream and starts reading its responses.
+     */
+    public void open() {
+        int openedId = captureClock.openStream();
+        BidiStream<StreamingRecognizeRequest, StreamingRecognizeResponse> opened = client.streamingRecognizeCallable().call();
+        StreamingRecognizeRequest configRequest = StreamingRecognizeRequest.newBuilder().setStreamingConfig(config).build();
+        opened.send(configRequest);
+        usage.streamOpened(openedId);
+        usage.sent(0, configRequest.getSerializedSize());
+        Call openedCall = new Call(workers.child("stream-" + openedId));
+        stream = opened;
+        streamId = openedId;
+        call = openedCall;
+        openedCall.scope.fork(() -> receive(opened, openedId, openedCall));
+        streamStartTime = System.currentTimeMillis();
+        lastKeepAlive = streamStartTime;
+        lastSpeech = streamStartTime;
+    }
+
+    @Override
+    public void accept(AudioChunk chunk) {
+        long now = System.currentTimeMillis();
+        reapDraining(now);
+        if (stream != null && call.ended) {
+            streamDown("the call ended");
+        }
+        if (recovering && stream != null && call.responded) {
+            // The reconnect has held; the next outage starts from the shortest backoff again
+            recovering = false;
+            reconnectDelay = RECONNECT_MIN_MS;
+        }
+        if (!unacknowledged.isEmpty()) {
+            acknowledgeReplayed();
+        }
+        if (down) {
+            if (now >= nextReconnect) {
+                reconnect(now);
+            }
+            if (down) {
+                spool(chunk);
+                return;
+            }
+        }
+        if (parked) {
+            if (!chunk.isAnySend()) {
+                preRoll.writeLatest(chunk.getData(), 0, chunk.getLength());
+                return;
+            }
+            unpark(chunk);
+        } else if (parking && stream != null && !hasBacklog() && !recovering && !chunk.isAnySend()
+                && (now - lastSpeech > PARK_IDLE_MS || now - streamStartTime > ROTATE_MS)) {
+            // Nobody is talking; close rather than keep alive or rotate an idle stream
+            park();
+            preRoll.writeLatest(chunk.getData(), 0, chunk.getLength());
+            return;
+        }
+
+        // Check if we need to reconnect (50 seconds limit to be safe)
+        if (stream != null && now - streamStartTime > ROTATE_MS) {
+            rotate();
+        }
+        if (stream == null) {
+            spool(chunk);
+            return;
+        }
+
+        if (hasBacklog() || (recovering && chunk.isAnySend())) {
+            // Live speech waits behind the spooled speech so the recognizer hears it in order,
+            // and is held until a reconnected stream has shown it is listening
+            spool(chunk);
+            if (spool.hasUnsent()) {
+                replay(now);
+                return;
+            }
+            // Everything has been sent and is only waiting to be acknowledged
+        }
+
+        if (chunk.isAnySend()) {
+            try {
+                send(chunk);
+                lastKeepAlive = System.currentTimeMillis();
+                lastSpeech = lastKeepAlive;
+                speechSinceFinalize = true;
+            } catch (Exception e) {
+                out.println("\nError sending audio: " + e.getMessage());
+                streamDown(e.getMessage());
+                spool(chunk);
+                return;
+            }
+        }
+        if (LOCAL_FINALIZE && speechSinceFinalize && !chunk.getSend()[chunk.getFrames() - 1]) {
+            // The endpointer has ended the utterance within this chunk
+            finalizeUtterance();
+        } else if (!chunk.isAnySend()) {
+            // Send minimal keep-alive audio every 5 seconds during silence
+            long currentTime = System.currentTimeMillis();
+            if (currentTime - lastKeepAlive > KEEP_ALIVE_MS) {
+                try {
+                    byte[] silence = new byte[320];
+                    StreamingRecognizeRequest request = StreamingRecognizeRequest.newBuilder()
+                            .setAudioContent(ByteString.copyFrom(silence))
+                            .build();
+                    stream.send(request);
+                    call.sentBytes += silence.length;
+                    captureClock.sent(silence.length, false);
+                    usage.keepAlive(silence.length, request.getSerializedSize());
+                    lastKeepAlive = currentTime;
+                } catch (Exception e) {
+                    // Ignore keep-alive errors
+                }
+            }
+        }
+    }
+
+    /**
+     * One send per run of frames to stream.
+     */
+    private void send(AudioChunk chunk) {
+        boolean[] sendFrames = chunk.getSend();
+        int frames = chunk.getFrames();
+        int length = chunk.getLength();
+        int f = 0;
+        while (f < frames) {
+            if (!sendFrames[f]) {
+                f++;
+                continue;
+            }
+            int from = f * Endpointer.FRAME_BYTES;
+            while (f < frames && sendFrames[f]) {
+                f++;
+            }
+            int to = Math.min(length, f * Endpointer.FRAME_BYTES);
+            if (chunk.isFallback()) {
+                vad.sentUngated(to - from);
+            }
+            // The chunk's time is when its last byte arrived
+            sendAudio(chunk.getData(), from, to - from, chunk.getCaptureByte() + from,
+                    chunk.getCapturedMillis() - (length - from) / 32);
+        }
+    }
+
+    /**
+     * Sends captured audio that starts at capture position {@code captureByte}, captured at {@code capturedMillis}.
+     */
+    private void sendAudio(byte[] data, int offset, int length, long captureByte, long capturedMillis) {
+        PipelineEvents.SttSend event = new PipelineEvents.SttSend();
+        event.begin();
+        StreamingRecognizeRequest request = StreamingRecognizeRequest.newBuilder()
+                .setAudioContent(ByteString.copyFrom(data, offset, length))
+                .build();
+        stream.send(request);
+        call.sentBytes += length;
+        usage.sent(length, request.getSerializedSize());
+        captureClock.sentCaptured(length, captureByte, capturedMillis);
+        if (event.shouldCommit()) {
+            event.streamId = streamId;
+            event.bytes = length;
+            event.captureLag = System.currentTimeMillis() - capturedMillis;
+            event.commit();
+        }
+    }
+
+    private void park() {
+        PipelineEvents.StreamRotation event = new PipelineEvents.StreamRotation();
+        event.begin();
+        int oldStreamId = streamId;
+        closeStream();
+        preRoll.clear();
+        parked = true;
+        parks++;
+        if (event.shouldCommit()) {
+            event.reason = "park";
+            event.oldStreamId = oldStreamId;
+            event.succeeded = true;
+            event.commit();
+        }
+    }
+
+    /**
+     * Reopens a stream for a chunk with speech in it, and sends the pre-roll and the chunk's
+     * audio ahead of its first speech frame so the recognizer hears the start of the utterance.
+     */
+    private void unpark(AudioChunk chunk) {
+        PipelineEvents.StreamRotation event = new PipelineEvents.StreamRotation();
+        event.begin();
+        long start = System.nanoTime();
+        parked = false;
+        try {
+            open();
+        } catch (Exception e) {
+            out.println("Failed to reopen stream: " + e.getMessage());
+            streamDown(e.getMessage());
+        }
+        if (event.shouldCommit()) {
+            event.reason = "unpark";
+            event.newStreamId = stream != null ? streamId : 0;
+            event.succeeded = stream != null;
+            event.commit();
+        }
+
+        // Whether or not it worked, the pre-roll goes ahead of the chunk; spooled if the stream is down
+        int preRollBytes = preRoll.available();
+        if (preRollBytes > 0) {
+            byte[] audio = preRoll.readAll();
+            usage.recovered(preRollBytes);
+            long captureByte = chunk.getCaptureByte() - preRollBytes;
+            long capturedMillis = chunk.getCapturedMillis() - (chunk.getLength() + preRollBytes) / 32;
+            if (stream != null) {
+                sendAudio(audio, 0, preRollBytes, captureByte, capturedMillis);
+            } else {
+                spoolAudio(audio, 0, preRollBytes, captureByte, capturedMillis);
+            }
+        }
+        boolean[] sendFrames = chunk.getSend();
+        for (int f = 0; f < sendFrames.length && !sendFrames[f]; f++) {
+            sendFrames[f] = true;
+            usage.recovered(Math.min(chunk.getLength(), (f + 1) * Endpointer.FRAME_BYTES) - f * Endpointer.FRAME_BYTES);
+        }
+        if (stream == null) {
+            return;
+        }
+
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        reopens++;
+        reopenMillisTotal += millis;
+        reopenMillisMax = Math.max(reopenMillisMax, millis);
+        overBudgetRun = millis > REOPEN_BUDGET_MS ? overBudgetRun + 1 : 0;
+        if (overBudgetRun >= OVER_BUDGET_LIMIT) {
+            parking = false;
+            out.printf("[Reopening the speech stream took %d ms, over the %d ms budget %d times running; idle streams stay open from now on]%n",
+                millis, REOPEN_BUDGET_MS, overBudgetRun);
+        }
+    }
+
+    /**
+     * Prints how often utterances were finalized locally, how often the stream was parked
+     * and how long reopening took.
+     */
+    public void printSummary(PrintStream summary) {
+        if (LOCAL_FINALIZE) {
+            summary.printf("Finalized %d utterance%s at local end of speech%n", finalizations, finalizations == 1 ? "" : "s");
+        }
+        if (outages > 0 && spool != null) {
+            summary.printf("Speech stream went down %d time%s; %.1f s of speech spooled, %.1f s replayed, %.1f s dropped (spool full)%n",
+                outages, outages == 1 ? "" : "s", spool.getSpooledBytes() / 32_000.0,
+                spool.getReplayedBytes() / 32_000.0, spool.getDroppedBytes() / 32_000.0);
+        }
+        if (parks == 0) {
+            return;
+        }
+        summary.printf("Speech stream parked %d time%s while idle; reopened %d time%s, mean %d ms, max %d ms%n",
+            parks, parks == 1 ? "" : "s", reopens, reopens == 1 ? "" : "s",
+            reopens == 0 ? 0 : reopenMillisTotal / reopens, reopenMillisMax);
+    }
+
+    private void rotate() {
+        out.println("\n[Reconnecting stream to avoid timeout...]");
+        PipelineEvents.StreamRotation event = new PipelineEvents.StreamRotation();
+        event.begin();
+        int oldStreamId = streamId;
+        closeStream();
+        try {
+            open();
+            event.succeeded = true;
+            out.println("[Stream reconnected successfully]");
+        } catch (Exception e) {
+            out.println("Failed to reconnect stream: " + e.getMessage());
+            streamDown(e.getMessage());
+        }
+        if (event.shouldCommit()) {
+            event.reason = "rotation";
+            event.oldStreamId = oldStreamId;
+            event.newStreamId = streamId;
+            event.commit();
+        }
+    }
+
+    /**
+     * Half-closes the stream at the end of an utterance, so the recognizer finalizes what it
+     * has heard now rather than when its own endpointer gives up, and rolls on to a fresh stream.
+     */
+    private void finalizeUtterance() {
+        PipelineEvents.StreamRotation event = new PipelineEvents.StreamRotation();
+        event.begin();
+        int oldStreamId = streamId;
+        closeStream();
+        speechSinceFinalize = false;
+        finalizations++;
+        try {
+            // Opened now so the next utterance does not wait for it
+            open();
+            event.succeeded = true;
+        } catch (Exception e) {
+            out.println("Failed to open the next stream: " + e.getMessage());
+            streamDown(e.getMessage());
+        }
+        if (event.shouldCommit()) {
+            event.reason = "finalize";
+            event.oldStreamId = oldStreamId;
+            event.newStreamId = streamId;
+            event.commit();
+        }
+    }
+
+    /**
+     * Ends the current stream and waits (up to {@code stt.drain.ms}) for the final results of
+     * every retired stream. Call once the send stage has stopped.
+     */
+    public void close() {
+        closeStream();
+        if (spool != null) {
+            if (!spool.isEmpty()) {
+                out.printf("%.1f s of spooled speech was never replayed%n", spool.pendingBytes() / 32_000.0);
+            }
+            try {
+                spool.close();
+            } catch (IOException e) {
+                // The file is deleted on close either way
+            }
+        }
+        while (!draining.isEmpty()) {
+            Call retired = draining.poll();
+            WorkerScope scope = retired.scope;
+            long deadline = retired.drainDeadline;
+            while (scope.activeTasks() > 0 && System.currentTimeMillis() < deadline) {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            scope.close();
+        }
+    }
+
+    /**
+     * Half-closes the current stream. Its reader keeps going until the recognizer has sent
+     * the last results and ends the call, or until the drain time runs out.
+     */
+    private void closeStream() {
+        if (stream != null) {
+            try {
+                stream.closeSend();
+            } catch (Exception e) {
+                // Ignore errors on close
+            }
+            stream = null;
+        }
+        if (call != null) {
+            call.drainDeadline = System.currentTimeMillis() + DRAIN_MS;
+            draining.add(call);
+            call = null;
+        }
+    }
+
+    /**
+     * Retires a stream that has failed and starts holding speech until a reconnect works.
+     * A reconnected stream that fails before it has answered is part of the same outage.
+     */
+    private void streamDown(String why) {
+        long now = System.currentTimeMillis();
+        if (call != null) {
+            call.failed = true;
+        }
+        if (!down && !recovering) {
+            outages++;
+            out.println("\n[Speech stream down (" + why + "); holding speech until it reconnects]");
+            nextReconnect = now;
+            reconnectDelay = RECONNECT_MIN_MS;
+        } else if (!down) {
+            backOff(now, why);
+        }
+        closeStream();
+        down = true;
+        recovering = true;
+    }
+
+    private void reconnect(long now) {
+        try {
+            open();
+        } catch (Exception e) {
+            backOff(now, e.getMessage());
+            return;
+        }
+        down = false;
+        lastReplay = now - REPLAY_SEED_MS;
+        if (hasBacklog() && !replaying) {
+            replaying = true;
+            out.printf("[Speech stream reconnected; replaying %.1f s of held speech]%n", spool.pendingBytes() / 32_000.0);
+        } else if (!replaying) {
+            out.println("[Speech stream reconnected]");
+        }
+    }
+
+    private void backOff(long now, String why) {
+        nextReconnect = now + reconnectDelay;
+        out.printf("Reconnecting the speech stream failed (%s); next try in %.1f s%n", why, reconnectDelay / 1000.0);
+        reconnectDelay = Math.min(RECONNECT_MAX_MS, reconnectDelay * 2);
+    }
+
+    private boolean hasBacklog() {
+        return spool != null && !spool.isEmpty();
+    }
+
+    /**
+     * Holds the chunk's runs of speech in the spool.
+     */
+    private void spool(AudioChunk chunk) {
+        boolean[] sendFrames = chunk.getSend();
+        int frames = chunk.getFrames();
+        int length = chunk.getLength();
+        int f = 0;
+        while (f < frames) {
+            if (!sendFrames[f]) {
+                f++;
+                continue;
+            }
+            int from = f * Endpointer.FRAME_BYTES;
+            while (f < frames && sendFrames[f]) {
+                f++;
+            }
+            int to = Math.min(length, f * Endpointer.FRAME_BYTES);
+            if (chunk.isFallback()) {
+                vad.sentUngated(to - from); // Goes out when the spool is replayed
+            }
+            spoolAudio(chunk.getData(), from, to - from, chunk.getCaptureByte() + from,
+                    chunk.getCapturedMillis() - (length - from) / 32);
+        }
+    }
+
+    private void spoolAudio(byte[] data, int offset, int length, long captureByte, long capturedMillis) {
+        try {
+            if (spool == null) {
+                spool = new AudioSpool(SPOOL_MAX_BYTES);
+            }
+            spool.append(data, offset, length, captureByte, capturedMillis);
+        } catch (IOException e) {
+            System.err.println("Error spooling speech audio: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sends spooled speech, at most {@code stt.replay.speed} times the audio time since the last call.
+     * Each run stays in the spool until {@link #acknowledgeReplayed()} finds the recognizer has it.
+     */
+    private void replay(long now) {
+        long budget = Math.min(REPLAY_SPEED * 32_000L, (now - lastReplay) * 32L * REPLAY_SPEED);
+        lastReplay = now;
+        try {
+            AudioSpool.Segment segment;
+            while (budget > 0 && (segment = spool.peek()) != null) {
+                byte[] audio = segment.getAudio();
+                sendAudio(audio, 0, audio.length, segment.getCaptureByte(), segment.getCapturedMillis());
+                spool.sent();
+                call.replayedEnds.add(call.sentBytes / 32);
+                if (unacknowledged.peekLast() != call) {
+                    unacknowledged.add(call);
+                }
+                budget -= audio.length;
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading spooled speech audio: " + e.getMessage());
+            return;
+        } catch (RuntimeException e) {
+            streamDown(e.getMessage());
+            return;
+        }
+        lastKeepAlive = now;
+        lastSpeech = now;
+        speechSinceFinalize = true;
+    }
+
+    /**
+     * Drops replayed runs from the spool once the recognizer has them: a result ends at or
+     * after them, or their stream finished cleanly. If a stream fails with runs unconfirmed,
+     * the spool is rewound so they go out again on the next stream.
+     */
+    private void acknowledgeReplayed() {
+        try {
+            while (!unacknowledged.isEmpty()) {
+                Call oldest = unacknowledged.peek();
+                boolean finished = oldest.ended && !oldest.failed;
+                long heard = oldest.heardMillis;
+                while (!oldest.replayedEnds.isEmpty() && (finished || oldest.replayedEnds.peek() <= heard)) {
+                    oldest.replayedEnds.poll();
+                    spool.acknowledge();
+                }
+                if (!oldest.replayedEnds.isEmpty()) {
+                    if (oldest.failed) {
+                        for (Call unconfirmed : unacknowledged) {
+                            unconfirmed.replayedEnds.clear();
+                        }
+                        unacknowledged.clear();
+                        spool.rewind();
+                    }
+                    break;
+                }
+                unacknowledged.poll();
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading spooled speech audio: " + e.getMessage());
+        }
+        if (replaying && spool.isEmpty()) {
+            replaying = false;
+            out.println("[Held speech replayed]");
+        }
+    }
+
+    /**
+     * Closes retired streams whose reader has finished or run out of time. A stream cut off
+     * at its deadline has not confirmed what it was sent.
+     */
+    private void reapDraining(long now) {
+        while (!draining.isEmpty() && (draining.peek().scope.activeTasks() == 0 || now >= draining.peek().drainDeadline)) {
+            Call retired = draining.poll();
+            if (retired.scope.activeTasks() > 0) {
+                retired.failed = true;
+            }
+            retired.scope.close();
+        }
+    }
+
+    private void receive(BidiStream<StreamingRecognizeRequest, StreamingRecognizeResponse> myStream, int myStreamId,
+                         Call myCall) {
+        long previousEndOffset = 0;
+        try {
+            Iterator<StreamingRecognizeResponse> responseIterator = myStream.iterator();
+            while (responseIterator.hasNext() && !Thread.currentThread().isInterrupted()) {
+                StreamingRecognizeResponse nextResponse = responseIterator.next();
+                myCall.responded = true;
+                for (StreamingRecognitionResult result : nextResponse.getResultsList()) {
+                    if (result.hasResultEndTime()) {
+                        myCall.heardMillis = Math.max(myCall.heardMillis, toMillis(result.getResultEndTime()));
+                    }
+                    long startOffset = 0;
+                    long endOffset = 0;
+                    if (result.getIsFinal()) {
+                        // Offsets are into this stream's audio; the first word's start is exact,
+                        // otherwise the result began where the previous one ended
+                        SpeechRecognitionAlternative alternative = result.getAlternatives(0);
+                        endOffset = toMillis(result.getResultEndTime());
+                        startOffset = alternative.getWordsCount() > 0
+                                ? toMillis(alternative.getWords(0).getStartTime())
+                                : previousEndOffset;
+                        previousEndOffset = endOffset;
+                    }
+                    results.accept(new Result(myStreamId, result, startOffset, endOffset));
+                }
+            }
+        } catch (Exception e) {
+            myCall.failed = true;
+            if (!Thread.currentThread().isInterrupted()) {
+                out.println("\nResponse thread error: " + e.getMessage());
+            }
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            myCall.failed = true; // Cut off before the recognizer was done
+        }
+        myCall.ended = true;
+    }
+
+    private static long toMillis(com.google.protobuf.Duration duration) {
+        return duration.getSeconds() * 1000 + duration.getNanos() / 1_000_000;
+    }
+}
@@ -0,0 +1,138 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Immutable rope of transcript entries joined by single spaces.
+ *
+ * Appending or prepending an entry is O(1) and shares the existing rope, so a growing
+ * slurp or continuous-mode selection never re-concatenates what it already holds.
+ * The flat text is built at most once per rope instance and cached.
+ */
+public final class SelectionRope {
+    public static final SelectionRope EMPTY = new SelectionRope(null, null, "");
+
+    private final SelectionRope left;
+    private final SelectionRope right;
+    private final String leaf;
+    private final int length;
+    private volatile String flattened;
+
+    private SelectionRope(SelectionRope left, SelectionRope right, String leaf) {
+        this.left = left;
+        this.right = right;
+        this.leaf = leaf;
+        if (leaf != null) {
+            this.length = leaf.length();
+            this.flattened = leaf;
+        } else {
+            this.length = left.length + 1 + right.length; // +1 for the joining space
+        }
+    }
+
+    public static SelectionRope of(String text) {
+        return text.isEmpty() ? EMPTY : new SelectionRope(null, null, text);
+    }
+
+    public SelectionRope append(String text) {
+        if (text.isEmpty()) {
+            return this;
+        }
+        if (length == 0) {
+            return of(text);
+        }
+        // Once flattened, start from the flat text so later walks stay shallow
+        SelectionRope base = flattened != null && leaf == null ? of(flattened) : this;
+        return new SelectionRope(base, of(text), null);
+    }
+
+    public SelectionRope prepend(String text) {
+        if (text.isEmpty()) {
+            return this;
+        }
+        if (length == 0) {
+            return of(text);
+        }
+        SelectionRope base = flattened != null && leaf == null ? of(flattened) : this;
+        return new SelectionRope(of(text), base, null);
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns the last {@code maxChars} characters, touching only the leaves that hold them.
+     */
+    public String tail(int maxChars) {
+        if (length <= maxChars) {
+            return toString();
+        }
+        String flat = flattened;
+        if (flat != null) {
+            return flat.substring(length - maxChars);
+        }
+
+        // Reverse in-order walk, right to left, until enough characters are collected
+        List<String> pieces = new ArrayList<>();
+        int collected = 0;
+        Deque<SelectionRope> stack = new ArrayDeque<>();
+        stack.push(this);
+        while (!stack.isEmpty() && collected < maxChars) {
+            SelectionRope node = stack.pop();
+            String piece = node.flattened;
+            if (piece != null) {
+                if (collected + piece.length() > maxChars) {
+                    piece = piece.substring(piece.length() - (maxChars - collected));
+                }
+                pieces.add(piece);
+                collected += piece.length();
+            } else if (node == SEPARATOR_MARK) {
+                pieces.add(" ");
+                collected++;
+            } else {
+                stack.push(node.left);
+                stack.push(SEPARATOR_MARK);
+                stack.push(node.right);
+            }
+        }
+
+        StringBuilder sb = new StringBuilder(collected);
+        for (int i = pieces.size() - 1; i >= 0; i--) {
+            sb.append(pieces.get(i));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        String flat = flattened;
+        if (flat != null) {
+            return flat;
+        }
+
+        // Iterative in-order walk so deep continuous-mode ropes cannot overflow the stack
+        StringBuilder sb = new StringBuilder(length);
+        Deque<SelectionRope> stack = new ArrayDeque<>();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            SelectionRope node = stack.pop();
+            if (node.flattened != null) {
+                sb.append(node.flattened);
+            } else if (node == SEPARATOR_MARK) {
+                sb.append(' ');
+            } else {
+                stack.push(node.right);
+                stack.push(SEPARATOR_MARK);
+                stack.push(node.left);
+            }
+        }
+        flat = sb.toString();
+        flattened = flat;
+        return flat;
+    }
+
+    // Sentinel pushed between children during walks to emit the joining space
+    private static final SelectionRope SEPARATOR_MARK = new SelectionRope(EMPTY, EMPTY, null);
+}
@@ -0,0 +1,84 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Startup options from the command line, optionally backed by a properties file.
+ *
+ * <pre>
+ *   --headless            No prompts; start everything at once using saved settings
+ *   --device &lt;choice&gt;     Input device by list number or by part of its name
+ *   --config &lt;file&gt;      Properties file with headless, device and llm.warmup keys
+ *   --no-warmup           Skip opening the LLM connection ahead of the first request
+ * </pre>
+ * Command-line options override the file.
+ */
+public class StartupConfig {
+    private boolean headless = false;
+    private String device = null;
+    private boolean llmWarmup = true;
+
+    public static StartupConfig parse(String[] args) throws IOException {
+        StartupConfig config = new StartupConfig();
+
+        // The file is read first so that flags given alongside it win
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("--config")) {
+                config.load(args[i + 1]);
+            }
+        }
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--headless":
+                    config.headless = true;
+                    break;
+                case "--device":
+                    config.device = value(args, ++i, "--device");
+                    break;
+                case "--no-warmup":
+                    config.llmWarmup = false;
+                    break;
+                case "--config":
+                    value(args, ++i, "--config");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        return config;
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException(option + " needs a value");
+        }
+        return args[index];
+    }
+
+    private void load(String file) throws IOException {
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(Paths.get(file))) {
+            props.load(in);
+        }
+        headless = Boolean.parseBoolean(props.getProperty("headless", String.valueOf(headless)));
+        device = props.getProperty("device", device);
+        llmWarmup = Boolean.parseBoolean(props.getProperty("llm.warmup", String.valueOf(llmWarmup)));
+    }
+
+    public boolean isHeadless() {
+        return headless;
+    }
+
+    /**
+     * @return The requested input device (list number or name fragment), or null to prompt
+     */
+    public String getDevice() {
+        return device;
+    }
+
+    public boolean isLlmWarmup() {
+        return llmWarmup;
+    }
+}
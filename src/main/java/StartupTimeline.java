@@ -0,0 +1,60 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Records when each startup step ran, relative to JVM start, and prints them as a timeline.
+ *
+ * Steps may run on different threads; each is shown with its start, end and thread so
+ * overlap (or its absence) is visible, followed by the time to the first captured audio.
+ */
+public class StartupTimeline {
+    private final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+    private final List<String> steps = new ArrayList<>(); // guarded by this
+    private long firstCaptureMillis = -1;
+
+    /**
+     * Runs {@code step} and records how long it took, including when it fails.
+     */
+    public <T> T time(String name, Callable<T> step) throws Exception {
+        long start = System.currentTimeMillis();
+        String outcome = "";
+        try {
+            return step.call();
+        } catch (Exception e) {
+            outcome = "  (failed: " + e.getMessage() + ")";
+            throw e;
+        } finally {
+            long end = System.currentTimeMillis();
+            synchronized (this) {
+                steps.add(String.format("  %6d - %6d ms  %-16s %-22s%s",
+                    start - jvmStartMillis, end - jvmStartMillis, name, Thread.currentThread().getName(), outcome));
+            }
+        }
+    }
+
+    /**
+     * Records the first captured audio. Later calls are ignored.
+     *
+     * @return True the first time
+     */
+    public synchronized boolean firstCapture() {
+        if (firstCaptureMillis >= 0) {
+            return false;
+        }
+        firstCaptureMillis = System.currentTimeMillis();
+        return true;
+    }
+
+    public synchronized void print(PrintStream out) {
+        out.println("Startup timeline (ms since JVM start):");
+        for (String step : steps) {
+            out.println(step);
+        }
+        if (firstCaptureMillis >= 0) {
+            out.println("  Time to first capture: " + (firstCaptureMillis - jvmStartMillis) + " ms");
+        }
+    }
+}
@@ -0,0 +1,167 @@
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tallies what the recognizer is paid to hear, against what the microphone heard.
+ *
+ * Every captured byte ends up in exactly one bucket: sent as speech, held back by the VAD
+ * and endpointer, or held back by push-to-mute. Keep-alive silence is counted on its own
+ * since it is billed like speech but was never captured. Bytes on the wire (the serialized
+ * requests, audio plus protobuf framing and the stream config) are kept per stream.
+ *
+ * {@link #rates()} reports the rates since its previous call, for a periodic status line;
+ * {@link #printSummary(PrintStream)} reports the whole session.
+ */
+public class SttUsage {
+    private static final double BYTES_PER_SECOND = 32_000.0; // 16 kHz, 16-bit mono
+    // Used only for the estimate in the summary; set to your own rate per minute of audio
+    private static final double PRICE_PER_MINUTE = Double.parseDouble(System.getProperty("stt.price.per.minute", "0.016"));
+    // Streaming more than this share of a minute or more of audio suggests the gating has stopped working
+    private static final double UNGATED_WARNING = 0.9;
+
+    private final AtomicLong capturedBytes = new AtomicLong();
+    private final AtomicLong speechBytes = new AtomicLong();
+    private final AtomicLong suppressedBytes = new AtomicLong();
+    private final AtomicLong mutedBytes = new AtomicLong();
+    private final AtomicLong keepAliveBytes = new AtomicLong();
+    private final AtomicLong wireBytes = new AtomicLong();
+
+    // Per-stream figures; only the send stage writes them
+    private volatile int streamId = 0;
+    private volatile long streamWireBytes = 0;
+    private int streams = 0;
+    private long maxStreamWireBytes = 0;
+
+    // Totals at the previous rates() call
+    private long lastRatesNanos = System.nanoTime();
+    private long lastCaptured = 0;
+    private long lastSent = 0;
+    private long lastWire = 0;
+
+    /**
+     * Records what became of one captured chunk.
+     *
+     * @param captured Bytes captured
+     * @param speech Bytes the endpointer wanted streamed
+     * @param sent Bytes of those left after push-to-mute
+     */
+    public void gated(int captured, int speech, int sent) {
+        capturedBytes.addAndGet(captured);
+        suppressedBytes.addAndGet(captured - speech);
+        mutedBytes.addAndGet(speech - sent);
+    }
+
+    /**
+     * Records audio first held back as silence that was then streamed after all, as
+     * pre-roll ahead of an utterance on a reopened stream. Call before {@link #sent}.
+     */
+    public void recovered(int bytes) {
+        suppressedBytes.addAndGet(-bytes);
+    }
+
+    /**
+     * Starts counting wire bytes for a new stream.
+     */
+    public synchronized void streamOpened(int id) {
+        finishStream();
+        streamId = id;
+        streams++;
+    }
+
+    /**
+     * Records a request sent on the current stream.
+     *
+     * @param audioBytes Captured audio in the request (0 for the config)
+     * @param requestBytes Serialized size of the request
+     */
+    public void sent(int audioBytes, int requestBytes) {
+        speechBytes.addAndGet(audioBytes);
+        wire(requestBytes);
+    }
+
+    /**
+     * Records keep-alive silence sent on the current stream.
+     */
+    public void keepAlive(int audioBytes, int requestBytes) {
+        keepAliveBytes.addAndGet(audioBytes);
+        wire(requestBytes);
+    }
+
+    private void wire(int requestBytes) {
+        wireBytes.addAndGet(requestBytes);
+        streamWireBytes += requestBytes;
+    }
+
+    private void finishStream() {
+        maxStreamWireBytes = Math.max(maxStreamWireBytes, streamWireBytes);
+        streamWireBytes = 0;
+    }
+
+    public double getCapturedSeconds() {
+        return capturedBytes.get() / BYTES_PER_SECOND;
+    }
+
+    public double getSentSeconds() {
+        return speechBytes.get() / BYTES_PER_SECOND;
+    }
+
+    public double getSuppressedSeconds() {
+        return suppressedBytes.get() / BYTES_PER_SECOND;
+    }
+
+    public double getMutedSeconds() {
+        return mutedBytes.get() / BYTES_PER_SECOND;
+    }
+
+    public double getKeepAliveSeconds() {
+        return keepAliveBytes.get() / BYTES_PER_SECOND;
+    }
+
+    public long getWireBytes() {
+        return wireBytes.get();
+    }
+
+    /**
+     * @return Share of captured audio that was not streamed, 0 to 1
+     */
+    public double getSavedFraction() {
+        long captured = capturedBytes.get();
+        return captured == 0 ? 0 : 1 - (double) speechBytes.get() / captured;
+    }
+
+    /**
+     * @return One status line with the rates since the previous call
+     */
+    public synchronized String rates() {
+        long now = System.nanoTime();
+        long captured = capturedBytes.get();
+        long sent = speechBytes.get() + keepAliveBytes.get();
+        long wire = wireBytes.get();
+        double elapsed = Math.max(1e-9, (now - lastRatesNanos) / 1e9);
+        long capturedDelta = captured - lastCaptured;
+        long sentDelta = sent - lastSent;
+        String line = String.format("STT: streaming %.0f%% of audio (%.1f of %.1f s/min), %.1f kbit/s on the wire, stream %d at %,d bytes",
+            capturedDelta == 0 ? 0 : 100.0 * sentDelta / capturedDelta,
+            sentDelta / BYTES_PER_SECOND * 60 / elapsed, capturedDelta / BYTES_PER_SECOND * 60 / elapsed,
+            (wire - lastWire) * 8 / 1000.0 / elapsed, streamId, streamWireBytes);
+        if (capturedDelta >= 60 * BYTES_PER_SECOND && sentDelta > UNGATED_WARNING * capturedDelta) {
+            line += " - nearly everything is being streamed; is the VAD gating working?";
+        }
+        lastRatesNanos = now;
+        lastCaptured = captured;
+        lastSent = sent;
+        lastWire = wire;
+        return line;
+    }
+
+    public synchronized void printSummary(PrintStream out) {
+        finishStream();
+        double billed = getSentSeconds() + getKeepAliveSeconds();
+        out.printf("Audio captured: %.1f s; streamed: %.1f s speech + %.1f s keep-alive; held back: %.1f s by VAD, %.1f s muted (%.0f%% saved)%n",
+            getCapturedSeconds(), getSentSeconds(), getKeepAliveSeconds(), getSuppressedSeconds(), getMutedSeconds(),
+            100 * getSavedFraction());
+        out.printf("STT wire: %,d bytes over %d stream%s (largest %,d); est. cost %.4f, %.4f without gating%n",
+            wireBytes.get(), streams, streams == 1 ? "" : "s", maxStreamWireBytes,
+            billed / 60 * PRICE_PER_MINUTE, getCapturedSeconds() / 60 * PRICE_PER_MINUTE);
+    }
+}
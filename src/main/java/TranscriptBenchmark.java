@@ -0,0 +1,218 @@
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Standalone throughput check for transcript persistence.
+ *
+ * Usage: java TranscriptBenchmark [entries]   (default 1,000,000)
+ */
+public class TranscriptBenchmark {
+    // Most frequent first; the rest of the vocabulary is synthetic
+    private static final String[] WORDS = {
+        "the", "you", "a", "to", "and", "of", "is", "that", "it", "we", "how", "what", "would", "in",
+        "for", "do", "your", "this", "when", "can", "design", "service", "data", "system", "about",
+        "tell", "me", "time", "rate", "limiter", "kafka", "partition", "leader", "fails", "during",
+        "rebalance", "payments", "cache", "latency", "database", "consistency", "spark", "java"
+    };
+    private static final int VOCABULARY_SIZE = 5000;
+
+    public static void main(String[] args) throws Exception {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path dir = Files.createTempDirectory("transcript-bench");
+        System.out.println("=== Transcript Benchmark ===");
+        System.out.println("Entries: " + entries + "  Directory: " + dir + "\n");
+
+        try {
+            benchmarkJournal(dir.resolve("journal"), entries);
+            benchmarkStore(dir.resolve("store"), entries);
+            benchmarkSearch(Math.min(entries, 100_000));
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    private static void benchmarkJournal(Path dir, int entries) throws IOException, InterruptedException {
+        Files.createDirectories(dir);
+        String[] samples = buildSamples(1024);
+
+        // Writes: appends on the caller thread, group commit on a timer like TranscriptBuffer
+        TranscriptJournal journal = new TranscriptJournal(dir);
+        ScheduledExecutorService syncer = Executors.newSingleThreadScheduledExecutor();
+        syncer.scheduleWithFixedDelay(() -> {
+            try {
+                journal.sync();
+            } catch (IOException e) {
+                System.err.println("Sync failed: " + e.getMessage());
+            }
+        }, 100, 100, TimeUnit.MILLISECONDS);
+
+        long worstAppendNanos = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < entries; i++) {
+            long t0 = System.nanoTime();
+            journal.append(i, samples[i % samples.length]);
+            worstAppendNanos = Math.max(worstAppendNanos, System.nanoTime() - t0);
+        }
+        long appendNanos = System.nanoTime() - start;
+        syncer.shutdown();
+        syncer.awaitTermination(5, TimeUnit.SECONDS);
+        journal.close();
+        long writeNanos = System.nanoTime() - start;
+        long bytes = journal.getGenerationBytes();
+
+        report("Journal append", entries, appendNanos);
+        System.out.printf("  worst single append: %.1f us%n", worstAppendNanos / 1_000.0);
+        report("Journal append + final sync", entries, writeNanos);
+        System.out.printf("  journal size: %.1f MB%n", bytes / (1024.0 * 1024.0));
+
+        // Recovery: replay every record and verify ordering
+        long[] expected = {0};
+        start = System.nanoTime();
+        long replayed = TranscriptJournal.replay(dir, (seq, text) -> {
+            if (seq != expected[0]++) {
+                throw new IllegalStateException("Out of order record " + seq);
+            }
+        });
+        long replayNanos = System.nanoTime() - start;
+        if (replayed != entries) {
+            throw new IllegalStateException("Replayed " + replayed + " of " + entries + " records");
+        }
+        report("Journal recovery", entries, replayNanos);
+    }
+
+    private static void benchmarkStore(Path dir, int entries) throws IOException, InterruptedException {
+        String[] samples = buildSamples(1024);
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        TranscriptStore store = new TranscriptStore(dir, executor);
+        long start = System.nanoTime();
+        for (int i = 0; i < entries; i++) {
+            store.append(samples[i % samples.length]);
+        }
+        long appendNanos = System.nanoTime() - start;
+        // Let sealing and compression catch up before measuring a cold start
+        while (store.heapEntries() >= Integer.getInteger("transcript.segment.entries", 4096)) {
+            Thread.sleep(50);
+        }
+        store.close();
+        shutdown(executor);
+        report("Store append", entries, appendNanos);
+
+        // Cold start: constant in history size, only the unsealed tail is replayed
+        executor = Executors.newSingleThreadScheduledExecutor();
+        start = System.nanoTime();
+        store = new TranscriptStore(dir, executor);
+        long openNanos = System.nanoTime() - start;
+        System.out.printf("%-30s %,12d entries, %,d on heap, opened in %.1f ms%n",
+            "Store startup", store.size(), store.heapEntries(), openNanos / 1_000_000.0);
+
+        // Lazy paging: walk backwards from the newest entry, as MOVE_UP does
+        int reads = Math.min(entries, 100_000);
+        start = System.nanoTime();
+        for (int i = 0; i < reads; i++) {
+            int index = store.size() - 1 - i;
+            if (!store.get(index).equals(samples[index % samples.length])) {
+                throw new IllegalStateException("Entry " + index + " read back incorrectly");
+            }
+        }
+        report("Store sequential read back", reads, System.nanoTime() - start);
+
+        // Random access mostly misses the segment cache and inflates a cold segment each time
+        int randomReads = Math.min(entries, 2_000);
+        Random random = new Random(7);
+        start = System.nanoTime();
+        for (int i = 0; i < randomReads; i++) {
+            store.get(random.nextInt(store.size()));
+        }
+        report("Store random read (cold)", randomReads, System.nanoTime() - start);
+        store.close();
+        shutdown(executor);
+    }
+
+    private static void benchmarkSearch(int entries) {
+        String[] samples = buildSamples(4096);
+        TranscriptIndex index = new TranscriptIndex(0);
+        long start = System.nanoTime();
+        for (int i = 0; i < entries; i++) {
+            index.add(i, samples[i % samples.length]);
+        }
+        report("Index add", entries, System.nanoTime() - start);
+
+        String[] queries = {"kafka", "partition leader", "\"leader fails\"", "reb", "rate limiter payments",
+            "\"how would you\" design", "the"};
+        for (String query : queries) {
+            // Warm up, then time
+            for (int i = 0; i < 5000; i++) {
+                index.search(query, 20);
+            }
+            int runs = 1000;
+            long[] samplesNanos = new long[runs];
+            int hits = 0;
+            for (int i = 0; i < runs; i++) {
+                long t0 = System.nanoTime();
+                hits = index.search(query, 20).size();
+                samplesNanos[i] = System.nanoTime() - t0;
+            }
+            Arrays.sort(samplesNanos);
+            System.out.printf("Search %-24s %2d hits  p50 %.3f ms  p99 %.3f ms%n",
+                query, hits, samplesNanos[runs / 2] / 1_000_000.0, samplesNanos[runs * 99 / 100] / 1_000_000.0);
+        }
+    }
+
+    private static void shutdown(ScheduledExecutorService executor) throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(60, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Builds sentences whose word frequencies follow Zipf's law, like natural speech.
+     */
+    private static String[] buildSamples(int count) {
+        double[] cumulative = new double[VOCABULARY_SIZE];
+        double total = 0;
+        for (int rank = 0; rank < VOCABULARY_SIZE; rank++) {
+            total += 1.0 / (rank + 1);
+            cumulative[rank] = total;
+        }
+
+        String[] samples = new String[count];
+        Random random = new Random(42);
+        for (int i = 0; i < count; i++) {
+            StringBuilder sb = new StringBuilder();
+            int words = 4 + random.nextInt(16);
+            for (int w = 0; w < words; w++) {
+                if (w > 0) {
+                    sb.append(' ');
+                }
+                int rank = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+                rank = rank >= 0 ? rank : -rank - 1;
+                sb.append(rank < WORDS.length ? WORDS[rank] : "word" + rank);
+            }
+            samples[i] = sb.toString();
+        }
+        return samples;
+    }
+
+    private static void report(String label, long operations, long nanos) {
+        double seconds = nanos / 1_000_000_000.0;
+        System.out.printf("%-30s %,12d ops in %8.1f ms  (%,.0f ops/s)%n",
+            label, operations, nanos / 1_000_000.0, operations / seconds);
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    System.err.println("Failed to delete " + path);
+                }
+            });
+        }
+    }
+}
@@ -3,229 +3,584 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.concurrent.locks.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 
+/**
+ * Navigable transcript history.
+ *
+ * Navigation, selection and search state is an immutable {@link View} published through an
+ * atomic reference. Writers build the next view and install it with a compare-and-set, and
+ * readers (the renderer, submit, search) work from whichever view they picked up without
+ * locking. Entries themselves live in the append-only {@link TranscriptStore}, which is
+ * also read without locks, so a view only needs to remember how many entries it covers.
+ * Capture times, confidence and audio frames sit alongside in a {@link TranscriptTimeline},
+ * which answers time-range selections by binary search.
+ */
 public class TranscriptBuffer {
-    private static final String BUFFER_FILE = "transcript_buffer.txt";
+    private static final String BUFFER_FILE = "transcript_buffer.txt"; // Legacy flat snapshot, migrated on startup
+    private static final Path DATA_DIR = Paths.get(System.getProperty("transcript.dir", "."));
+    private static final String STORE_DIR = "transcript_segments";
+    private static final String TIMELINE_FILE = "timeline.dat";
+    private static final long TIMELINE_SYNC_MS = Long.getLong("transcript.journal.sync.ms", 1000);
+    private static final long RECENT_WINDOW_MS = Long.getLong("transcript.recent.window.seconds", 90) * 1000;
     private static final int DISPLAY_CONTEXT_LINES = 2; // Show 2 lines above and below selection
+    private static final int INDEX_MAX_ENTRIES = Integer.getInteger("transcript.index.max.entries", 200_000);
+    private static final int SEARCH_RESULT_LIMIT = 20;
+    private static final int SELECTION_PREVIEW_CHARS = 400; // Tail of a long selection shown on screen
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
     
-    private final List<String> transcripts = new ArrayList<>();
-    private int selectionIndex = 0;
-    private int slurpStartIndex = -1; // -1 means no slurping active
-    private boolean continuousMode = false; // For continuous collection mode
-    private int continuousModeStartIndex = -1;
+    private TranscriptStore transcripts;
+    private TranscriptTimeline timeline;
+    private TranscriptIndex searchIndex;
+    private final AtomicReference<View> state = new AtomicReference<>(new View());
     
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
     private final ScheduledExecutorService persistenceExecutor = Executors.newSingleThreadScheduledExecutor();
     
-    private volatile boolean isDirty = false;
-    private KeyBindingConfig keyConfig;
+    private volatile KeyBindingConfig keyConfig;
     private final ConsoleDisplay console = new ConsoleDisplay();
+    private final TranscriptRenderer<ScreenState> renderer =
+        new TranscriptRenderer<>(console, () -> captureScreen(state.get()), this::layoutScreen);
+    
+    /**
+     * One published state of the buffer. Fields are only assigned on a fresh copy before
+     * it is published and never change afterwards.
+     */
+    private static final class View {
+        int size = 0; // Entries this view covers
+        int selectionIndex = 0;
+        int slurpStartIndex = -1; // -1 means no slurping active
+        boolean continuousMode = false; // For continuous collection mode
+        int continuousModeStartIndex = -1;
+        
+        // Search mode state
+        boolean searchMode = false;
+        String searchQuery = "";
+        List<TranscriptIndex.Hit> searchHits = Collections.emptyList();
+        int searchHitCursor = 0;
+        int searchOriginIndex = -1;
+        long searchNanos = 0;
+        
+        // Latest interim result, shown after the last entry until its final result replaces it
+        String provisional = null;
+        
+        // Selection text for [selectionStart, selectionEnd], carried forward while the range only grows
+        SelectionRope selection = null;
+        int selectionStart = -1;
+        int selectionEnd = -1;
+        
+        View copy() {
+            View next = new View();
+            next.size = size;
+            next.selectionIndex = selectionIndex;
+            next.slurpStartIndex = slurpStartIndex;
+            next.continuousMode = continuousMode;
+            next.continuousModeStartIndex = continuousModeStartIndex;
+            next.searchMode = searchMode;
+            next.searchQuery = searchQuery;
+            next.searchHits = searchHits;
+            next.searchHitCursor = searchHitCursor;
+            next.searchOriginIndex = searchOriginIndex;
+            next.searchNanos = searchNanos;
+            next.provisional = provisional;
+            next.selection = selection;
+            next.selectionStart = selectionStart;
+            next.selectionEnd = selectionEnd;
+            return next;
+        }
+        
+        int rangeStart() {
+            if (continuousMode && continuousModeStartIndex != -1) {
+                // In continuous mode, include everything from start to current
+                return continuousModeStartIndex;
+            } else if (slurpStartIndex != -1 && slurpStartIndex <= selectionIndex) {
+                // In slurp mode
+                return slurpStartIndex;
+            }
+            return selectionIndex;
+        }
+        
+        boolean hasRange() {
+            return (slurpStartIndex != -1 && slurpStartIndex <= selectionIndex) || 
+                (continuousMode && continuousModeStartIndex != -1);
+        }
+        
+        void resetSlurp() {
+            slurpStartIndex = -1;
+            invalidateSelection();
+        }
+        
+        void invalidateSelection() {
+            selection = null;
+            selectionStart = -1;
+            selectionEnd = -1;
+        }
+    }
     
     public TranscriptBuffer() {
         loadFromDisk();
         
-        // Schedule periodic persistence every 2 minutes
-        persistenceExecutor.scheduleAtFixedRate(() -> {
-            if (isDirty) {
-                saveToDisk();
-            }
-        }, 2, 2, TimeUnit.MINUTES);
+        // Index recent history in the background; live transcripts are indexed as they arrive
+        searchIndex = new TranscriptIndex(Math.max(0, transcripts.size() - INDEX_MAX_ENTRIES));
+        Thread indexer = new Thread(this::indexHistory, "transcript-indexer");
+        indexer.setDaemon(true);
+        indexer.start();
         
         // Add shutdown hook for final save
         Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown));
     }
     
     public void addTranscript(String transcript) {
+        long now = System.currentTimeMillis();
+        addTranscript(transcript, now, now, Float.NaN, TranscriptTimeline.UNKNOWN, TranscriptTimeline.UNKNOWN,
+            TranscriptTimeline.UNKNOWN, TranscriptTimeline.UNKNOWN);
+    }
+    
+    /**
+     * Adds a final transcript with what the recognizer and capture loop know about it.
+     *
+     * @param startMillis When the speech started, epoch millis
+     * @param endMillis When the speech ended, epoch millis
+     * @param confidence Recognizer confidence, or NaN if not reported
+     * @param startFrame First capture frame of the speech, or -1
+     * @param endFrame Last capture frame of the speech, or -1
+     * @param streamId Recognizer stream that produced it, or -1
+     * @param mutedMillis How much of the speech was muted, or -1 if not known
+     */
+    public void addTranscript(String transcript, long startMillis, long endMillis, float confidence,
+                              int startFrame, int endFrame, int streamId, int mutedMillis) {
         if (transcript == null || transcript.trim().isEmpty()) {
             return;
         }
         
-        lock.writeLock().lock();
-        try {
-            transcripts.add(transcript.trim());
+        String cleaned = transcript.trim();
+        int index;
+        // Text and metadata must land at the same index
+        synchronized (timeline) {
+            index = transcripts.append(cleaned);
+            timeline.append(startMillis, endMillis, confidence, startFrame, endFrame, streamId, mutedMillis);
+        }
+        searchIndex.add(index, cleaned);
+        
+        update(view -> {
             // Move selection to the latest transcript
-            selectionIndex = transcripts.size() - 1;
+            View next = view.copy();
+            next.size = Math.max(view.size, index + 1);
+            next.selectionIndex = next.size - 1;
+            next.provisional = null;
             
             // Don't reset slurp if in continuous mode
-            if (!continuousMode) {
-                resetSlurp();
+            if (!next.continuousMode) {
+                next.resetSlurp();
             }
-            
-            isDirty = true;
-            displayBuffer();
-        } finally {
-            lock.writeLock().unlock();
-        }
+            return next;
+        });
     }
     
     public void moveUp() {
-        lock.writeLock().lock();
-        try {
-            if (selectionIndex > 0) {
-                selectionIndex--;
-                resetSlurp();
-                displayBuffer();
-            }
-        } finally {
-            lock.writeLock().unlock();
-        }
+        move(-1);
     }
     
     public void moveDown() {
-        lock.writeLock().lock();
-        try {
-            if (selectionIndex < transcripts.size() - 1) {
-                selectionIndex++;
-                resetSlurp();
-                displayBuffer();
+        move(1);
+    }
+    
+    /**
+     * Moves the selection by {@code delta} entries (negative is up), clamped to the buffer.
+     */
+    public void move(int delta) {
+        update(view -> {
+            int target = Math.max(0, Math.min(view.size - 1, view.selectionIndex + delta));
+            if (target == view.selectionIndex || view.size == 0) {
+                return view;
             }
-        } finally {
-            lock.writeLock().unlock();
-        }
+            View next = view.copy();
+            next.selectionIndex = target;
+            next.resetSlurp();
+            return next;
+        });
     }
     
     public void slurpPrevious() {
-        lock.writeLock().lock();
-        try {
-            if (transcripts.isEmpty()) {
-                return;
+        slurpPrevious(1);
+    }
+    
+    /**
+     * Extends the slurp range {@code steps} entries further back in one update.
+     */
+    public void slurpPrevious(int steps) {
+        update(view -> {
+            if (view.size == 0) {
+                return view;
             }
+            View next = view.copy();
             
             // Initialize slurp if not active
-            if (slurpStartIndex == -1) {
-                slurpStartIndex = selectionIndex;
+            if (next.slurpStartIndex == -1) {
+                next.slurpStartIndex = next.selectionIndex;
             }
             
             // Extend slurp backwards if possible
-            if (slurpStartIndex > 0) {
-                slurpStartIndex--;
+            next.slurpStartIndex = Math.max(0, next.slurpStartIndex - steps);
+            return next;
+        });
+    }
+    
+    /**
+     * Shows an interim result in the provisional slot after the last entry. Unchanged text is
+     * ignored, and redraws for interim text are throttled to {@code interim.max.hz}.
+     */
+    public void setInterim(String transcript) {
+        String text = transcript == null || transcript.isBlank() ? null : transcript.trim();
+        View current = state.get();
+        while (!Objects.equals(current.provisional, text)) {
+            View next = current.copy();
+            next.provisional = text;
+            if (state.compareAndSet(current, next)) {
+                renderer.submitThrottled();
+                return;
             }
-            
-            displayBuffer();
-        } finally {
-            lock.writeLock().unlock();
+            current = state.get();
         }
     }
     
-    public String getSelection() {
-        lock.readLock().lock();
-        try {
-            if (transcripts.isEmpty()) {
-                return "";
-            }
-            
-            int startIdx = selectionIndex;
-            int endIdx = selectionIndex;
-            
-            // Determine range based on mode
-            if (continuousMode && continuousModeStartIndex != -1) {
-                // In continuous mode, include everything from start to current
-                startIdx = continuousModeStartIndex;
-                endIdx = selectionIndex;
-            } else if (slurpStartIndex != -1 && slurpStartIndex <= selectionIndex) {
-                // In slurp mode
-                startIdx = slurpStartIndex;
-                endIdx = selectionIndex;
+    /**
+     * Selects everything said in the last {@code transcript.recent.window.seconds} (default 90).
+     */
+    public void selectRecent() {
+        long now = System.currentTimeMillis();
+        if (!selectTimeRange(now - RECENT_WINDOW_MS, now)) {
+            System.out.println("\n[Nothing said in the last " + RECENT_WINDOW_MS / 1000 + " seconds]");
+        }
+    }
+    
+    /**
+     * Selects, as a slurp range, every entry spoken between {@code fromMillis} and {@code toMillis}.
+     *
+     * @return false if no entry falls in the range
+     */
+    public boolean selectTimeRange(long fromMillis, long toMillis) {
+        int first = timeline.firstEndingAtOrAfter(fromMillis);
+        int last = timeline.lastStartingAtOrBefore(toMillis);
+        if (first > last) {
+            return false;
+        }
+        View next = update(view -> {
+            int end = Math.min(last, view.size - 1);
+            if (first > end) {
+                return view;
             }
-            
+            View ranged = view.copy();
+            ranged.continuousMode = false;
+            ranged.continuousModeStartIndex = -1;
+            ranged.selectionIndex = end;
+            ranged.slurpStartIndex = first;
+            ranged.invalidateSelection();
+            return ranged;
+        });
+        return next.slurpStartIndex == first;
+    }
+    
+    public String getSelection() {
+        return selection(state.get()).toString();
+    }
+    
+    /**
+     * Returns the view's selected range as a rope. A range that only gained an entry at either
+     * end since the cached one is extended in O(1); anything else is rebuilt once and the result
+     * cached on the view if it is still current.
+     */
+    private SelectionRope selection(View view) {
+        if (view.size == 0) {
+            return SelectionRope.EMPTY;
+        }
+        int startIdx = view.rangeStart();
+        int endIdx = view.selectionIndex;
+        if (view.selection != null && startIdx == view.selectionStart && endIdx == view.selectionEnd) {
+            return view.selection;
+        }
+        
+        SelectionRope rope;
+        if (view.selection != null && startIdx == view.selectionStart && endIdx == view.selectionEnd + 1) {
+            rope = view.selection.append(transcripts.get(endIdx));
+        } else if (view.selection != null && endIdx == view.selectionEnd && startIdx == view.selectionStart - 1) {
+            rope = view.selection.prepend(transcripts.get(startIdx));
+        } else {
             // Build the selection
-            StringBuilder sb = new StringBuilder();
+            rope = SelectionRope.EMPTY;
             for (int i = startIdx; i <= endIdx; i++) {
-                if (i > startIdx) {
-                    sb.append(" ");
-                }
-                sb.append(transcripts.get(i));
+                rope = rope.append(transcripts.get(i));
             }
-            return sb.toString();
-        } finally {
-            lock.readLock().unlock();
         }
+        
+        // Best effort: a newer view just recomputes from whatever it carries
+        View cached = view.copy();
+        cached.selection = rope;
+        cached.selectionStart = startIdx;
+        cached.selectionEnd = endIdx;
+        state.compareAndSet(view, cached);
+        return rope;
     }
     
     public void toggleContinuousMode() {
-        lock.writeLock().lock();
-        try {
-            continuousMode = !continuousMode;
-            if (continuousMode) {
-                // Starting continuous mode - mark current position
-                continuousModeStartIndex = selectionIndex;
-                System.out.println("\n[CONTINUOUS MODE STARTED] - All new transcripts will be collected");
-            } else {
-                // Ending continuous mode
-                continuousModeStartIndex = -1;
-                System.out.println("\n[CONTINUOUS MODE ENDED]");
-            }
-            displayBuffer();
-        } finally {
-            lock.writeLock().unlock();
+        View next = update(view -> {
+            View toggled = view.copy();
+            toggled.continuousMode = !view.continuousMode;
+            // Starting continuous mode marks the current position
+            toggled.continuousModeStartIndex = toggled.continuousMode ? view.selectionIndex : -1;
+            toggled.invalidateSelection();
+            return toggled;
+        });
+        if (next.continuousMode) {
+            System.out.println("\n[CONTINUOUS MODE STARTED] - All new transcripts will be collected");
+        } else {
+            System.out.println("\n[CONTINUOUS MODE ENDED]");
         }
     }
     
     public void clearSelection() {
-        lock.writeLock().lock();
-        try {
-            slurpStartIndex = -1;
-            if (continuousMode) {
-                continuousMode = false;
-                continuousModeStartIndex = -1;
-                System.out.println("\n[SELECTION CLEARED - Continuous mode ended]");
-            } else {
-                System.out.println("\n[SELECTION CLEARED]");
-            }
-            displayBuffer();
-        } finally {
-            lock.writeLock().unlock();
+        View[] before = new View[1];
+        update(view -> {
+            before[0] = view;
+            View next = view.copy();
+            next.resetSlurp();
+            next.continuousMode = false;
+            next.continuousModeStartIndex = -1;
+            return next;
+        });
+        if (before[0].continuousMode) {
+            System.out.println("\n[SELECTION CLEARED - Continuous mode ended]");
+        } else {
+            System.out.println("\n[SELECTION CLEARED]");
         }
     }
     
+    public void beginSearch() {
+        update(view -> {
+            View next = view.copy();
+            next.searchMode = true;
+            next.searchQuery = "";
+            next.searchHits = Collections.emptyList();
+            next.searchHitCursor = 0;
+            next.searchOriginIndex = view.selectionIndex;
+            return next;
+        });
+    }
+    
+    /**
+     * Re-runs the search for the query typed so far and jumps to the best hit.
+     */
+    public void updateSearch(String query) {
+        if (!state.get().searchMode) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<TranscriptIndex.Hit> hits = searchIndex.search(query, SEARCH_RESULT_LIMIT);
+        long nanos = System.nanoTime() - start;
+        
+        update(view -> {
+            if (!view.searchMode) {
+                return view;
+            }
+            View next = view.copy();
+            next.searchQuery = query;
+            next.searchHits = hits;
+            next.searchNanos = nanos;
+            next.searchHitCursor = 0;
+            if (!hits.isEmpty() && hits.get(0).getEntry() < view.size) {
+                next.selectionIndex = hits.get(0).getEntry();
+                next.resetSlurp();
+            }
+            return next;
+        });
+    }
+    
+    /**
+     * Jumps to the next-ranked hit, wrapping around after the last one.
+     */
+    public void nextSearchHit() {
+        update(view -> {
+            if (!view.searchMode || view.searchHits.isEmpty()) {
+                return view;
+            }
+            View next = view.copy();
+            next.searchHitCursor = (view.searchHitCursor + 1) % view.searchHits.size();
+            next.selectionIndex = view.searchHits.get(next.searchHitCursor).getEntry();
+            next.resetSlurp();
+            return next;
+        });
+    }
+    
+    /**
+     * Leaves search mode, either keeping the hit as the selection or returning to where search started.
+     */
+    public void endSearch(boolean keepSelection) {
+        update(view -> {
+            if (!view.searchMode) {
+                return view;
+            }
+            View next = view.copy();
+            next.searchMode = false;
+            if (!keepSelection && view.searchOriginIndex >= 0 && view.searchOriginIndex < view.size) {
+                next.selectionIndex = view.searchOriginIndex;
+            }
+            next.searchHits = Collections.emptyList();
+            return next;
+        });
+    }
+    
+    public boolean isSearchMode() {
+        return state.get().searchMode;
+    }
+    
     public void setKeyConfig(KeyBindingConfig config) {
         this.keyConfig = config;
     }
     
-    private void resetSlurp() {
-        slurpStartIndex = -1;
+    /**
+     * Publishes {@code change(current)} with a compare-and-set, retrying against the newer view
+     * if another thread got in first, then hands the result to the renderer. {@code change} may
+     * run more than once and must only build the next view.
+     */
+    private View update(UnaryOperator<View> change) {
+        while (true) {
+            View current = state.get();
+            View next = change.apply(current);
+            if (next == current) {
+                return current;
+            }
+            if (state.compareAndSet(current, next)) {
+                renderer.submit();
+                return next;
+            }
+        }
+    }
+    
+    /**
+     * Everything one frame of the buffer display needs, taken from a single view.
+     */
+    private static final class ScreenState {
+        int size;
+        int selectionIndex;
+        int firstVisible;
+        String[] visible;
+        long[] visibleMillis;
+        int[] visibleMuted;
+        int slurpStartIndex;
+        boolean continuousMode;
+        boolean searchMode;
+        String searchQuery;
+        int searchHitCount;
+        int searchHitCursor;
+        long searchNanos;
+        int selectionLength;
+        String selectionPreview; // null when there is no slurp or continuous selection
+        String provisional;
     }
     
-    private void displayBuffer() {
-        StringBuilder display = new StringBuilder();
-        display.append("=".repeat(80)).append("\n");
-        display.append("TRANSCRIPT BUFFER\n");
-        display.append("=".repeat(80)).append("\n");
-        
-        if (transcripts.isEmpty()) {
-            display.append("[No transcripts yet]\n");
-            console.displayTranscriptBuffer(display.toString());
-            return;
+    /**
+     * Takes what the next frame shows from the current view, paging in the visible entries;
+     * runs on the renderer thread.
+     */
+    private ScreenState captureScreen(View view) {
+        ScreenState screen = new ScreenState();
+        screen.size = view.size;
+        screen.selectionIndex = view.selectionIndex;
+        screen.slurpStartIndex = view.slurpStartIndex;
+        screen.continuousMode = view.continuousMode;
+        screen.searchMode = view.searchMode;
+        screen.searchQuery = view.searchQuery;
+        screen.searchHitCount = view.searchHits.size();
+        screen.searchHitCursor = view.searchHitCursor;
+        screen.searchNanos = view.searchNanos;
+        screen.provisional = view.provisional;
+        if (screen.size == 0) {
+            screen.visible = new String[0];
+            screen.visibleMillis = new long[0];
+            screen.visibleMuted = new int[0];
+            return screen;
         }
         
         // Calculate display range
-        int startIdx = Math.max(0, selectionIndex - DISPLAY_CONTEXT_LINES);
-        int endIdx = Math.min(transcripts.size() - 1, selectionIndex + DISPLAY_CONTEXT_LINES);
+        int startIdx = Math.max(0, view.selectionIndex - DISPLAY_CONTEXT_LINES);
+        int endIdx = Math.min(view.size - 1, view.selectionIndex + DISPLAY_CONTEXT_LINES);
         
         // Ensure we show at least 5 lines if available
         int totalLines = endIdx - startIdx + 1;
-        if (totalLines < 5 && transcripts.size() >= 5) {
+        if (totalLines < 5 && view.size >= 5) {
             if (startIdx == 0) {
-                endIdx = Math.min(4, transcripts.size() - 1);
-            } else if (endIdx == transcripts.size() - 1) {
-                startIdx = Math.max(0, transcripts.size() - 5);
+                endIdx = Math.min(4, view.size - 1);
+            } else if (endIdx == view.size - 1) {
+                startIdx = Math.max(0, view.size - 5);
+            }
+        }
+        screen.firstVisible = startIdx;
+        screen.visible = new String[endIdx - startIdx + 1];
+        screen.visibleMillis = new long[endIdx - startIdx + 1];
+        screen.visibleMuted = new int[endIdx - startIdx + 1];
+        for (int i = startIdx; i <= endIdx; i++) {
+            screen.visible[i - startIdx] = transcripts.get(i);
+            screen.visibleMillis[i - startIdx] = timeline.getEndMillis(i);
+            screen.visibleMuted[i - startIdx] = timeline.getMutedMillis(i);
+        }
+        
+        if (view.hasRange()) {
+            SelectionRope current = selection(view);
+            screen.selectionLength = current.length();
+            screen.selectionPreview = current.tail(SELECTION_PREVIEW_CHARS);
+        }
+        return screen;
+    }
+    
+    /**
+     * Lays out one frame; runs on the renderer thread without the buffer lock.
+     */
+    private String layoutScreen(ScreenState screen) {
+        KeyBindingConfig keyConfig = this.keyConfig;
+        StringBuilder display = new StringBuilder();
+        display.append("=".repeat(80)).append("\n");
+        display.append("TRANSCRIPT BUFFER\n");
+        display.append("=".repeat(80)).append("\n");
+        
+        if (screen.size == 0) {
+            display.append("[No transcripts yet]\n");
+            if (screen.provisional != null) {
+                display.append(String.format("[%3d] %s     %s [INTERIM]%n", 0, "--:--:--", screen.provisional));
             }
+            return display.toString();
         }
         
         // Display transcripts
-        for (int i = startIdx; i <= endIdx; i++) {
-            String prefix = (i == selectionIndex) ? "--> " : "    ";
+        for (int j = 0; j < screen.visible.length; j++) {
+            int i = screen.firstVisible + j;
+            String prefix = (i == screen.selectionIndex) ? "--> " : "    ";
             String suffix = "";
             
             // Mark slurped range
-            if (slurpStartIndex != -1 && i >= slurpStartIndex && i <= selectionIndex) {
+            if (screen.slurpStartIndex != -1 && i >= screen.slurpStartIndex && i <= screen.selectionIndex) {
                 suffix = " [SLURPED]";
             }
+            // Part of the speech was never sent, so the text may have a gap
+            if (screen.visibleMuted[j] > 0) {
+                suffix += String.format(" [MUTED %.1fs]", screen.visibleMuted[j] / 1000.0);
+            }
             
-            display.append(String.format("[%3d] %s%s%s%n", i, prefix, transcripts.get(i), suffix));
+            long millis = screen.visibleMillis[j];
+            String time = millis > 0
+                ? TIME_FORMAT.format(Instant.ofEpochMilli(millis).atZone(ZoneId.systemDefault()))
+                : "--:--:--";
+            display.append(String.format("[%3d] %s %s%s%s%n", i, time, prefix, screen.visible[j], suffix));
+        }
+        
+        // The provisional entry takes the next index; its final result replaces it there
+        boolean provisionalShown = screen.provisional != null
+            && screen.firstVisible + screen.visible.length == screen.size;
+        if (provisionalShown) {
+            display.append(String.format("[%3d] %s     %s [INTERIM]%n", screen.size, "--:--:--", screen.provisional));
         }
         
         // Show navigation info
@@ -238,80 +593,143 @@ public class TranscriptBuffer {
                 keyConfig.getDisplayString(KeyBindingConfig.Action.SUBMIT),
                 keyConfig.getDisplayString(KeyBindingConfig.Action.CONTINUOUS_MODE),
                 keyConfig.getDisplayString(KeyBindingConfig.Action.CLEAR_SELECTION)));
-            display.append(String.format("Audio: %s = Mute (hold to pause capture)%n",
-                keyConfig.getDisplayString(KeyBindingConfig.Action.MUTE_WHILE_HELD)));
+            display.append(String.format("Audio: %s = Mute (hold to pause capture) | %s = Search | %s = Last %ds%n",
+                keyConfig.getDisplayString(KeyBindingConfig.Action.MUTE_WHILE_HELD),
+                keyConfig.getDisplayString(KeyBindingConfig.Action.SEARCH),
+                keyConfig.getDisplayString(KeyBindingConfig.Action.SELECT_RECENT),
+                RECENT_WINDOW_MS / 1000));
         } else {
             display.append("Navigation: Key bindings not configured\n");
         }
-        display.append(String.format("Position: %d of %d", selectionIndex + 1, transcripts.size()));
-        if (continuousMode) {
+        display.append(String.format("Position: %d of %d", screen.selectionIndex + 1, screen.size));
+        if (screen.continuousMode) {
             display.append(" [CONTINUOUS MODE ACTIVE]");
         }
         display.append("\n");
+        if (screen.provisional != null && !provisionalShown) {
+            display.append("Interim: ").append(screen.provisional).append("\n");
+        }
+        
+        if (screen.searchMode) {
+            display.append(String.format("SEARCH: %s_  (%s, %.2f ms) | ENTER = Accept | ESC = Cancel",
+                screen.searchQuery,
+                screen.searchHitCount == 0 ? "no hits" : "hit " + (screen.searchHitCursor + 1) + " of " + screen.searchHitCount,
+                screen.searchNanos / 1_000_000.0));
+            if (keyConfig != null) {
+                display.append(" | ").append(keyConfig.getDisplayString(KeyBindingConfig.Action.SEARCH)).append(" = Next hit");
+            }
+            display.append("\n");
+        }
         
         // Display active selection if any
-        if ((slurpStartIndex != -1 && slurpStartIndex <= selectionIndex) || 
-            (continuousMode && continuousModeStartIndex != -1)) {
+        if (screen.selectionPreview != null) {
+            String submitKey = keyConfig != null ? keyConfig.getDisplayString(KeyBindingConfig.Action.SUBMIT) : "Submit";
             display.append("\n").append("~".repeat(80)).append("\n");
-            if (continuousMode) {
+            if (screen.continuousMode) {
                 display.append("CONTINUOUS MODE SELECTION (will be submitted with ");
-                display.append(keyConfig.getDisplayString(KeyBindingConfig.Action.SUBMIT)).append("):\n");
+                display.append(submitKey).append("):\n");
             } else {
                 display.append("SLURPED SELECTION (will be submitted with ");
-                display.append(keyConfig.getDisplayString(KeyBindingConfig.Action.SUBMIT)).append("):\n");
+                display.append(submitKey).append("):\n");
             }
             display.append("~".repeat(80)).append("\n");
-            display.append(getSelection()).append("\n");
+            if (screen.selectionLength > SELECTION_PREVIEW_CHARS) {
+                display.append(String.format("... (%,d chars, showing last %d)%n", screen.selectionLength, SELECTION_PREVIEW_CHARS));
+            }
+            display.append(screen.selectionPreview).append("\n");
             display.append("~".repeat(80)).append("\n");
         }
         
-        // Display everything at once
-        console.displayTranscriptBuffer(display.toString());
+        return display.toString();
     }
     
-    private void loadFromDisk() {
-        Path path = Paths.get(BUFFER_FILE);
-        if (!Files.exists(path)) {
-            return;
+    private void indexHistory() {
+        int next = searchIndex.getNextEntry();
+        while (next < transcripts.size()) {
+            searchIndex.add(next, transcripts.get(next));
+            next = searchIndex.getNextEntry();
         }
-        
-        lock.writeLock().lock();
+    }
+    
+    private void loadFromDisk() {
         try {
-            List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
-            transcripts.clear();
-            transcripts.addAll(lines);
+            Path storeDir = DATA_DIR.resolve(STORE_DIR);
+            try {
+                transcripts = new TranscriptStore(storeDir, persistenceExecutor);
+            } catch (IOException e) {
+                System.err.println("Error opening transcript store, history will not be kept: " + e.getMessage());
+                storeDir = Files.createTempDirectory("transcripts");
+                transcripts = new TranscriptStore(storeDir, persistenceExecutor);
+            }
+            
+            if (transcripts.size() == 0) {
+                migrateLegacySnapshot();
+            }
             
-            // Set selection to last item
-            if (!transcripts.isEmpty()) {
-                selectionIndex = transcripts.size() - 1;
+            try {
+                timeline = new TranscriptTimeline(storeDir.resolve(TIMELINE_FILE), transcripts.size());
+            } catch (IOException e) {
+                System.err.println("Error opening transcript timeline, capture times will not be kept: " + e.getMessage());
+                timeline = new TranscriptTimeline(Files.createTempFile("timeline", ".dat"), transcripts.size());
             }
+            persistenceExecutor.scheduleWithFixedDelay(this::syncTimeline, TIMELINE_SYNC_MS, TIMELINE_SYNC_MS,
+                TimeUnit.MILLISECONDS);
             
-            System.out.println("Loaded " + transcripts.size() + " transcripts from disk");
+            System.out.println("Loaded " + transcripts.size() + " transcripts from disk ("
+                + transcripts.heapEntries() + " in memory)");
         } catch (IOException e) {
             System.err.println("Error loading transcript buffer: " + e.getMessage());
-        } finally {
-            lock.writeLock().unlock();
+        }
+        
+        // Set selection to last item
+        if (transcripts != null) {
+            View loaded = new View();
+            loaded.size = transcripts.size();
+            loaded.selectionIndex = Math.max(0, loaded.size - 1);
+            state.set(loaded);
         }
     }
     
-    private void saveToDisk() {
-        lock.readLock().lock();
+    private void syncTimeline() {
         try {
-            Path path = Paths.get(BUFFER_FILE);
-            Files.write(path, transcripts, StandardCharsets.UTF_8);
-            isDirty = false;
-            // No longer creating timestamped backups
+            timeline.sync();
         } catch (IOException e) {
-            System.err.println("Error saving transcript buffer: " + e.getMessage());
-        } finally {
-            lock.readLock().unlock();
+            System.err.println("Error syncing transcript timeline: " + e.getMessage());
         }
     }
     
+    /**
+     * One-time import of the flat transcript_buffer.txt snapshot written by earlier versions.
+     */
+    private void migrateLegacySnapshot() throws IOException {
+        Path snapshot = DATA_DIR.resolve(BUFFER_FILE);
+        if (!Files.exists(snapshot)) {
+            return;
+        }
+        List<String> legacy = Files.readAllLines(snapshot, StandardCharsets.UTF_8);
+        for (String text : legacy) {
+            transcripts.append(text);
+        }
+        transcripts.sync();
+        
+        Files.move(snapshot, DATA_DIR.resolve(BUFFER_FILE + ".migrated"), StandardCopyOption.REPLACE_EXISTING);
+        System.out.println("Migrated " + legacy.size() + " transcripts from " + BUFFER_FILE);
+    }
+    
     private void shutdown() {
+        renderer.close();
         persistenceExecutor.shutdown();
-        if (isDirty) {
-            saveToDisk();
+        try {
+            transcripts.close();
+        } catch (IOException e) {
+            System.err.println("Error closing transcript store: " + e.getMessage());
+        }
+        try {
+            if (timeline != null) {
+                timeline.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing transcript timeline: " + e.getMessage());
         }
         
         // Delete all transcript backup files
@@ -0,0 +1,95 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures addTranscript latency while other threads hammer navigation, rendering and
+ * submit, the way a held MOVE_UP key and the response thread do in a live session.
+ *
+ * Usage: java TranscriptContentionBenchmark [transcripts] [navigator threads]   (default 20,000 and 3)
+ */
+public class TranscriptContentionBenchmark {
+    public static void main(String[] args) throws Exception {
+        int transcripts = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int navigators = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        Path dir = Files.createTempDirectory("transcript-contention");
+
+        // Frames and status lines go nowhere; results are printed to the real console
+        PrintStream results = System.out;
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        System.setOut(discard);
+        System.setProperty("transcript.dir", dir.toString());
+
+        TranscriptBuffer buffer = new TranscriptBuffer();
+        for (int i = 0; i < 1000; i++) {
+            buffer.addTranscript("warm up transcript number " + i);
+        }
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong navigations = new AtomicLong();
+        CountDownLatch started = new CountDownLatch(navigators + 1);
+        Thread[] threads = new Thread[navigators + 1];
+        for (int t = 0; t < navigators; t++) {
+            boolean up = t % 2 == 0;
+            threads[t] = new Thread(() -> {
+                started.countDown();
+                while (running.get()) {
+                    if (up) {
+                        buffer.moveUp();
+                    } else {
+                        buffer.moveDown();
+                    }
+                    navigations.incrementAndGet();
+                }
+            }, "navigator-" + t);
+        }
+        threads[navigators] = new Thread(() -> {
+            started.countDown();
+            while (running.get()) {
+                buffer.slurpPrevious();
+                buffer.getSelection();
+                buffer.clearSelection();
+                navigations.addAndGet(3);
+            }
+        }, "submitter");
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        started.await();
+
+        long[] latencies = new long[transcripts];
+        long start = System.nanoTime();
+        for (int i = 0; i < transcripts; i++) {
+            String text = "candidate answer number " + i + " about kafka partition rebalancing";
+            long t0 = System.nanoTime();
+            buffer.addTranscript(text);
+            latencies[i] = System.nanoTime() - t0;
+        }
+        long elapsed = System.nanoTime() - start;
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Arrays.sort(latencies);
+        results.println("=== Transcript Contention Benchmark ===");
+        results.printf("addTranscript x %,d with %d navigator threads + 1 submitter%n", transcripts, navigators);
+        results.printf("  p50 %.1f us  p99 %.1f us  p99.9 %.1f us  max %.1f us%n",
+            latencies[transcripts / 2] / 1_000.0,
+            latencies[transcripts * 99 / 100] / 1_000.0,
+            latencies[transcripts * 999 / 1000] / 1_000.0,
+            latencies[transcripts - 1] / 1_000.0);
+        results.printf("  navigation ops during run: %,d (%,.0f ops/s)%n",
+            navigations.get(), navigations.get() / (elapsed / 1_000_000_000.0));
+
+        results.println("  store left in " + dir);
+
+        // The buffer has no close(); its shutdown hook flushes the store on exit
+        System.exit(0);
+    }
+}
@@ -0,0 +1,378 @@
+import java.util.*;
+
+/**
+ * Incrementally maintained full-text index over transcript entries.
+ *
+ * Each term maps to a postings list of (entry, position) pairs packed into a long
+ * ({@code entry << 32 | position}). Entries are only ever appended in order, so every
+ * postings list stays sorted without any re-sorting. Queries support plain terms,
+ * prefixes (a trailing {@code *}, and the last word while the user is still typing)
+ * and quoted phrases, ranked by BM25 with newer entries winning ties.
+ */
+public class TranscriptIndex {
+    private static final int MAX_PREFIX_EXPANSION = 64;
+    private static final float BM25_K1 = 1.2f;
+    private static final float BM25_B = 0.75f;
+
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    private final int firstEntry;
+    private int nextEntry;
+    private int[] entryLengths = new int[1024];
+    private long totalTokens = 0;
+
+    // Scratch space reused across queries, guarded by this
+    private float[] scores = new float[1024];
+    private int[] touched = new int[1024];
+
+    /**
+     * A growable, sorted postings list.
+     */
+    private static final class Postings {
+        long[] keys = new long[4];
+        int size = 0;
+        int entries = 0; // distinct entries, for idf
+
+        void add(int entry, int position) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            if (size == 0 || (int) (keys[size - 1] >>> 32) != entry) {
+                entries++;
+            }
+            keys[size++] = ((long) entry << 32) | position;
+        }
+    }
+
+    /**
+     * A ranked search result.
+     */
+    public static final class Hit {
+        private final int entry;
+        private final float score;
+
+        Hit(int entry, float score) {
+            this.entry = entry;
+            this.score = score;
+        }
+
+        public int getEntry() {
+            return entry;
+        }
+
+        public float getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * @param firstEntry Index of the oldest entry this index will cover
+     */
+    public TranscriptIndex(int firstEntry) {
+        this.firstEntry = firstEntry;
+        this.nextEntry = firstEntry;
+    }
+
+    /**
+     * Indexes the next entry. Entries must arrive in order; anything else is ignored so
+     * a live append and a background catch-up can both offer the same entry safely.
+     *
+     * @return true if the entry was indexed
+     */
+    public synchronized boolean add(int entry, String text) {
+        if (entry != nextEntry) {
+            return false;
+        }
+        int slot = entry - firstEntry;
+        if (slot == entryLengths.length) {
+            entryLengths = Arrays.copyOf(entryLengths, slot * 2);
+        }
+
+        List<String> tokens = tokenize(text);
+        for (int position = 0; position < tokens.size(); position++) {
+            terms.computeIfAbsent(tokens.get(position), t -> new Postings()).add(entry, position);
+        }
+        entryLengths[slot] = tokens.size();
+        totalTokens += tokens.size();
+        nextEntry++;
+        return true;
+    }
+
+    /**
+     * @return The index of the next entry this index expects
+     */
+    public synchronized int getNextEntry() {
+        return nextEntry;
+    }
+
+    /**
+     * Runs a query and returns up to {@code limit} hits, best first.
+     */
+    public synchronized List<Hit> search(String query, int limit) {
+        int entryCount = nextEntry - firstEntry;
+        if (entryCount == 0 || query == null || query.isBlank()) {
+            return Collections.emptyList();
+        }
+        if (scores.length < entryCount) {
+            scores = new float[entryLengths.length];
+            touched = new int[entryLengths.length];
+        }
+        float averageLength = (float) totalTokens / entryCount;
+        int touchedCount = 0;
+        boolean anyClause = false;
+
+        for (Clause clause : parse(query)) {
+            anyClause = true;
+            if (clause.phrase.size() > 1) {
+                touchedCount = scorePhrase(clause.phrase, entryCount, averageLength, touchedCount);
+            } else if (clause.prefix) {
+                String prefix = clause.phrase.get(0);
+                int expanded = 0;
+                for (Map.Entry<String, Postings> term : terms.subMap(prefix, prefix + Character.MAX_VALUE).entrySet()) {
+                    touchedCount = scoreTerm(term.getValue(), entryCount, averageLength, touchedCount);
+                    if (++expanded == MAX_PREFIX_EXPANSION) {
+                        break;
+                    }
+                }
+            } else {
+                Postings postings = terms.get(clause.phrase.get(0));
+                if (postings != null) {
+                    touchedCount = scoreTerm(postings, entryCount, averageLength, touchedCount);
+                }
+            }
+        }
+        if (!anyClause) {
+            return Collections.emptyList();
+        }
+
+        // Keep the best `limit` slots in a primitive min-heap; newer entries win ties
+        int[] heap = new int[Math.min(limit, touchedCount)];
+        int heapSize = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int slot = touched[i];
+            if (heapSize < heap.length) {
+                heap[heapSize++] = slot;
+                siftUp(heap, heapSize - 1);
+            } else if (heap.length > 0 && better(slot, heap[0])) {
+                heap[0] = slot;
+                siftDown(heap, heapSize);
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>(heapSize);
+        for (int i = 0; i < heapSize; i++) {
+            hits.add(new Hit(heap[i] + firstEntry, scores[heap[i]]));
+        }
+        for (int i = 0; i < touchedCount; i++) {
+            scores[touched[i]] = 0;
+        }
+        hits.sort((a, b) -> a.score != b.score ? Float.compare(b.score, a.score) : Integer.compare(b.entry, a.entry));
+        return hits;
+    }
+
+    private boolean better(int slotA, int slotB) {
+        return scores[slotA] != scores[slotB] ? scores[slotA] > scores[slotB] : slotA > slotB;
+    }
+
+    private void siftUp(int[] heap, int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!better(heap[parent], heap[i])) {
+                break;
+            }
+            int tmp = heap[parent];
+            heap[parent] = heap[i];
+            heap[i] = tmp;
+            i = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int size) {
+        int i = 0;
+        while (true) {
+            int left = 2 * i + 1;
+            int right = left + 1;
+            int worst = i;
+            if (left < size && better(heap[worst], heap[left])) {
+                worst = left;
+            }
+            if (right < size && better(heap[worst], heap[right])) {
+                worst = right;
+            }
+            if (worst == i) {
+                return;
+            }
+            int tmp = heap[worst];
+            heap[worst] = heap[i];
+            heap[i] = tmp;
+            i = worst;
+        }
+    }
+
+    private int scoreTerm(Postings postings, int entryCount, float averageLength, int touchedCount) {
+        float idf = idf(postings.entries, entryCount);
+        int i = 0;
+        while (i < postings.size) {
+            int entry = (int) (postings.keys[i] >>> 32);
+            int tf = 0;
+            while (i < postings.size && (int) (postings.keys[i] >>> 32) == entry) {
+                tf++;
+                i++;
+            }
+            touchedCount = accumulate(entry - firstEntry, idf * bm25(tf, entry, averageLength), touchedCount);
+        }
+        return touchedCount;
+    }
+
+    private int scorePhrase(List<String> phrase, int entryCount, float averageLength, int touchedCount) {
+        Postings[] lists = new Postings[phrase.size()];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = terms.get(phrase.get(i));
+            if (lists[i] == null) {
+                return touchedCount;
+            }
+        }
+
+        float idf = 0;
+        int driver = 0;
+        for (int k = 0; k < lists.length; k++) {
+            idf += idf(lists[k].entries, entryCount);
+            if (lists[k].size < lists[driver].size) {
+                driver = k;
+            }
+        }
+
+        // Drive from the rarest word; a phrase starting at (entry, p) needs word k at (entry, p + k).
+        // Targets only ever increase, so each other list is walked once with a galloping cursor.
+        int[] cursors = new int[lists.length];
+        int lastEntry = -1;
+        int tf = 0;
+        Postings rarest = lists[driver];
+        for (int i = 0; i < rarest.size; i++) {
+            if ((int) rarest.keys[i] < driver) {
+                continue; // Too close to the start of the entry to be preceded by the rest of the phrase
+            }
+            long start = rarest.keys[i] - driver;
+            boolean match = true;
+            for (int k = 0; k < lists.length && match; k++) {
+                if (k != driver) {
+                    cursors[k] = seek(lists[k], cursors[k], start + k);
+                    match = cursors[k] < lists[k].size && lists[k].keys[cursors[k]] == start + k;
+                }
+            }
+            if (!match) {
+                continue;
+            }
+            int entry = (int) (start >>> 32);
+            if (entry != lastEntry && tf > 0) {
+                touchedCount = accumulate(lastEntry - firstEntry, idf * bm25(tf, lastEntry, averageLength), touchedCount);
+                tf = 0;
+            }
+            lastEntry = entry;
+            tf++;
+        }
+        if (tf > 0) {
+            touchedCount = accumulate(lastEntry - firstEntry, idf * bm25(tf, lastEntry, averageLength), touchedCount);
+        }
+        return touchedCount;
+    }
+
+    /**
+     * @return The first index at or after {@code from} whose key is >= target
+     */
+    private static int seek(Postings postings, int from, long target) {
+        int step = 1;
+        int low = from;
+        while (low + step < postings.size && postings.keys[low + step] < target) {
+            low += step;
+            step <<= 1;
+        }
+        int found = Arrays.binarySearch(postings.keys, low, Math.min(low + step + 1, postings.size), target);
+        return found >= 0 ? found : -found - 1;
+    }
+
+    private int accumulate(int slot, float score, int touchedCount) {
+        if (scores[slot] == 0) {
+            touched[touchedCount++] = slot;
+        }
+        scores[slot] += score;
+        return touchedCount;
+    }
+
+    private float bm25(int tf, int entry, float averageLength) {
+        float length = entryLengths[entry - firstEntry];
+        return tf * (BM25_K1 + 1) / (tf + BM25_K1 * (1 - BM25_B + BM25_B * length / averageLength));
+    }
+
+    private static float idf(int entriesWithTerm, int entryCount) {
+        return (float) Math.log(1 + (entryCount - entriesWithTerm + 0.5) / (entriesWithTerm + 0.5));
+    }
+
+    private static final class Clause {
+        final List<String> phrase;
+        final boolean prefix;
+
+        Clause(List<String> phrase, boolean prefix) {
+            this.phrase = phrase;
+            this.prefix = prefix;
+        }
+    }
+
+    /**
+     * Splits a query into quoted phrases and single terms. A trailing '*' makes a term a
+     * prefix, and so does leaving the query without a trailing space (still typing).
+     */
+    private static List<Clause> parse(String query) {
+        List<Clause> clauses = new ArrayList<>();
+        boolean stillTyping = !query.endsWith(" ") && !query.endsWith("\"");
+        int i = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (c == '"') {
+                int end = query.indexOf('"', i + 1);
+                if (end < 0) {
+                    end = query.length();
+                }
+                List<String> phrase = tokenize(query.substring(i + 1, end));
+                if (!phrase.isEmpty()) {
+                    clauses.add(new Clause(phrase, false));
+                }
+                i = end + 1;
+            } else if (Character.isWhitespace(c)) {
+                i++;
+            } else {
+                int end = i;
+                while (end < query.length() && !Character.isWhitespace(query.charAt(end)) && query.charAt(end) != '"') {
+                    end++;
+                }
+                String word = query.substring(i, end);
+                boolean prefix = word.endsWith("*") || (stillTyping && end == query.length());
+                for (String token : tokenize(word)) {
+                    clauses.add(new Clause(Collections.singletonList(token), prefix));
+                }
+                i = end;
+            }
+        }
+        return clauses;
+    }
+
+    /**
+     * Lower-cases text and splits it on anything that is not a letter or digit.
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                current.append(Character.toLowerCase(c));
+            } else if (current.length() > 0) {
+                tokens.add(current.toString());
+                current.setLength(0);
+            }
+        }
+        if (current.length() > 0) {
+            tokens.add(current.toString());
+        }
+        return tokens;
+    }
+}
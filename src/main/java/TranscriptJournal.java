@@ -0,0 +1,294 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal for transcript entries.
+ *
+ * Each record is [seq:8][length:4][utf8 bytes][crc32:4]. Appends only copy into an
+ * in-memory buffer; {@link #sync()} writes the buffer out and forces it to disk, so
+ * many appends share one fsync (group commit). The journal is split into numbered
+ * generations so a compaction can rotate to a fresh file while the snapshot is written.
+ */
+public class TranscriptJournal implements Closeable {
+    private static final String FILE_PREFIX = "transcript_journal.";
+    private static final String FILE_SUFFIX = ".log";
+    private static final int HEADER_BYTES = 12; // seq + length
+    private static final int TRAILER_BYTES = 4; // crc32
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final Path directory;
+    private final CRC32 crc = new CRC32();
+
+    // Append side, guarded by this
+    private final List<Chunk> filled = new ArrayList<>();
+    private ByteBuffer pending = ByteBuffer.allocate(BUFFER_BYTES);
+    private long appendGeneration;
+    private long generationBytes;
+
+    // Disk side, guarded by syncLock so fsync never holds up append()
+    private final Object syncLock = new Object();
+    private FileChannel channel;
+    private long channelGeneration;
+    private boolean unforced = false;
+
+    private static final class Chunk {
+        final long generation;
+        final ByteBuffer bytes;
+
+        Chunk(long generation, ByteBuffer bytes) {
+            this.generation = generation;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Opens the journal in the given directory, continuing after the newest generation.
+     * Call {@link #replay(Path, RecordConsumer)} first if existing records must be recovered.
+     *
+     * @param directory The directory holding the journal generations
+     */
+    public TranscriptJournal(Path directory) throws IOException {
+        this.directory = directory;
+        List<Long> generations = listGenerations(directory);
+        long newest = generations.isEmpty() ? 0 : generations.get(generations.size() - 1);
+        synchronized (syncLock) {
+            generationBytes = openChannel(newest);
+        }
+        appendGeneration = newest;
+    }
+
+    /**
+     * Buffers a record for the next group commit. Never touches the disk.
+     *
+     * @param seq The position of the entry in the transcript list
+     * @param text The transcript text
+     */
+    public synchronized void append(long seq, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        int recordLength = HEADER_BYTES + bytes.length + TRAILER_BYTES;
+        if (recordLength > pending.remaining()) {
+            sealPending(Math.max(BUFFER_BYTES, recordLength));
+        }
+
+        crc.reset();
+        crc.update(bytes);
+        pending.putLong(seq);
+        pending.putInt(bytes.length);
+        pending.put(bytes);
+        pending.putInt((int) crc.getValue());
+        generationBytes += recordLength;
+    }
+
+    /**
+     * Starts a new generation. Every record appended before this call lives in a
+     * generation lower than the returned value. Does no I/O; the switch reaches the
+     * disk on the next {@link #sync()}.
+     *
+     * @return The generation that now receives appends
+     */
+    public synchronized long rotate() {
+        sealPending(BUFFER_BYTES);
+        appendGeneration++;
+        generationBytes = 0;
+        return appendGeneration;
+    }
+
+    /**
+     * Writes all buffered records and forces them to disk (the group commit).
+     */
+    public void sync() throws IOException {
+        synchronized (syncLock) {
+            PipelineEvents.TranscriptPersist event = new PipelineEvents.TranscriptPersist();
+            event.begin();
+            long written = 0;
+            List<Chunk> batch;
+            long targetGeneration;
+            synchronized (this) {
+                sealPending(BUFFER_BYTES);
+                batch = new ArrayList<>(filled);
+                filled.clear();
+                targetGeneration = appendGeneration;
+            }
+
+            for (Chunk chunk : batch) {
+                if (chunk.generation != channelGeneration) {
+                    switchChannel(chunk.generation);
+                }
+                ByteBuffer bytes = chunk.bytes;
+                bytes.flip();
+                written += bytes.remaining();
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                unforced = true;
+            }
+            if (channelGeneration != targetGeneration) {
+                switchChannel(targetGeneration);
+            }
+            if (unforced) {
+                channel.force(false);
+                unforced = false;
+                if (event.shouldCommit()) {
+                    event.file = "journal";
+                    event.bytes = written;
+                    event.commit();
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes every generation older than the given one, once a snapshot covers them.
+     * Call {@link #sync()} after {@link #rotate()} first so the old file is closed.
+     */
+    public void deleteGenerationsBefore(long keepFrom) throws IOException {
+        for (long gen : listGenerations(directory)) {
+            if (gen < keepFrom) {
+                Files.deleteIfExists(pathFor(directory, gen));
+            }
+        }
+    }
+
+    /**
+     * @return Bytes held by the current generation, including records not yet synced
+     */
+    public synchronized long getGenerationBytes() {
+        return generationBytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            try {
+                sync();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    private void sealPending(int nextCapacity) {
+        if (pending.position() > 0) {
+            filled.add(new Chunk(appendGeneration, pending));
+            pending = ByteBuffer.allocate(nextCapacity);
+        } else if (pending.capacity() < nextCapacity) {
+            pending = ByteBuffer.allocate(nextCapacity);
+        }
+    }
+
+    private void switchChannel(long gen) throws IOException {
+        if (unforced) {
+            channel.force(false);
+            unforced = false;
+        }
+        channel.close();
+        openChannel(gen);
+    }
+
+    private long openChannel(long gen) throws IOException {
+        Path path = pathFor(directory, gen);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channelGeneration = gen;
+        // Drop a torn tail left by a crash so new records follow the last valid one
+        long validLength = scan(path, null);
+        channel.truncate(validLength);
+        channel.position(validLength);
+        return validLength;
+    }
+
+    /**
+     * Callback for records recovered from the journal.
+     */
+    public interface RecordConsumer {
+        void accept(long seq, String text);
+    }
+
+    /**
+     * Replays every journal generation in the directory, oldest first.
+     *
+     * @return The number of valid records replayed
+     */
+    public static long replay(Path directory, RecordConsumer consumer) throws IOException {
+        long[] count = {0};
+        for (long gen : listGenerations(directory)) {
+            scan(pathFor(directory, gen), (seq, text) -> {
+                count[0]++;
+                consumer.accept(seq, text);
+            });
+        }
+        return count[0];
+    }
+
+    /**
+     * Reads records until the end of the file or the first torn/corrupt record.
+     *
+     * @return The byte length of the valid prefix
+     */
+    private static long scan(Path path, RecordConsumer consumer) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        CRC32 checksum = new CRC32();
+        long valid = 0;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(path), BUFFER_BYTES))) {
+            while (true) {
+                long seq;
+                int length;
+                try {
+                    seq = in.readLong();
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length < 0 || length > 16 * 1024 * 1024) {
+                    break;
+                }
+                byte[] bytes = new byte[length];
+                int stored;
+                try {
+                    in.readFully(bytes);
+                    stored = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                checksum.reset();
+                checksum.update(bytes);
+                if ((int) checksum.getValue() != stored) {
+                    break;
+                }
+                if (consumer != null) {
+                    consumer.accept(seq, new String(bytes, StandardCharsets.UTF_8));
+                }
+                valid += HEADER_BYTES + length + TRAILER_BYTES;
+            }
+        }
+        return valid;
+    }
+
+    private static List<Long> listGenerations(Path directory) throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                String number = name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length());
+                try {
+                    generations.add(Long.parseLong(number));
+                } catch (NumberFormatException e) {
+                    // Not one of ours
+                }
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+
+    private static Path pathFor(Path directory, long gen) {
+        return directory.resolve(String.format("%s%06d%s", FILE_PREFIX, gen, FILE_SUFFIX));
+    }
+}
@@ -1,30 +1,35 @@
-import com.github.kwhat.jnativehook.GlobalScreen;
-import com.github.kwhat.jnativehook.NativeHookException;
 import com.github.kwhat.jnativehook.keyboard.NativeKeyEvent;
-import com.github.kwhat.jnativehook.keyboard.NativeKeyListener;
 
-import java.util.HashSet;
-import java.util.Set;
 import java.util.function.Consumer;
 
-public class TranscriptNavigationHandler implements NativeKeyListener {
+public class TranscriptNavigationHandler implements HotkeyDispatcher.KeyInterceptor {
     
     private final TranscriptBuffer buffer;
     private final Consumer<String> submitToLLM;
     private final KeyBindingConfig config;
-    private final Set<Integer> pressedKeys = new HashSet<>();
+    private HotkeyDispatcher dispatcher;
+    private final ActionQueue actions;
     
-    // Track currently pressed action to prevent repeats
-    private KeyBindingConfig.Action currentAction = null;
+    // Query typed while search mode is active
+    private final StringBuilder searchQuery = new StringBuilder();
     
     public TranscriptNavigationHandler(TranscriptBuffer buffer, Consumer<String> submitToLLM, KeyBindingConfig config) {
         this.buffer = buffer;
         this.submitToLLM = submitToLLM;
         this.config = config;
+        this.actions = new ActionQueue(buffer, this::executeAction);
     }
     
-    public void register() throws NativeHookException {
-        GlobalScreen.addNativeKeyListener(this);
+    public void register(HotkeyDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+        for (KeyBindingConfig.Action action : KeyBindingConfig.Action.values()) {
+            KeyBindingConfig.KeyBinding binding = config.getBinding(action);
+            if (binding != null) {
+                dispatcher.bind(binding.getKeyCode(), binding.getModifierMask(), hotkeyFor(action));
+            }
+        }
+        dispatcher.setInterceptor(this);
+        
         System.out.println("\nTranscript navigation hotkeys registered:");
         for (KeyBindingConfig.Action action : KeyBindingConfig.Action.values()) {
             System.out.printf("  %-25s: %s%n", 
@@ -34,59 +39,86 @@ public class TranscriptNavigationHandler implements NativeKeyListener {
     }
     
     public void unregister() {
-        GlobalScreen.removeNativeKeyListener(this);
-    }
-    
-    
-    @Override
-    public void nativeKeyPressed(NativeKeyEvent e) {
-        int keyCode = e.getKeyCode();
-        pressedKeys.add(keyCode);
-        
-        // Build current modifier set
-        Set<Integer> modifiers = new HashSet<>();
-        for (int key : pressedKeys) {
-            if (isModifierKey(key)) {
-                modifiers.add(key);
+        if (dispatcher == null) {
+            return;
+        }
+        dispatcher.setInterceptor(null);
+        for (KeyBindingConfig.Action action : KeyBindingConfig.Action.values()) {
+            KeyBindingConfig.KeyBinding binding = config.getBinding(action);
+            if (binding != null) {
+                dispatcher.unbind(binding.getKeyCode(), binding.getModifierMask());
             }
         }
-        
-        // Find matching action
-        KeyBindingConfig.Action action = config.findAction(keyCode, modifiers);
-        
-        // Handle MUTE_WHILE_HELD specially
+        dispatcher = null;
+        actions.close();
+    }
+    
+    private HotkeyDispatcher.Hotkey hotkeyFor(KeyBindingConfig.Action action) {
+        // Mute lasts exactly as long as its key is held
         if (action == KeyBindingConfig.Action.MUTE_WHILE_HELD) {
-            Main.setMuted(true);
-            currentAction = action;
-        }
-        // Execute other actions if not already pressed
-        else if (action != null && action != currentAction) {
-            currentAction = action;
-            executeAction(action);
+            return new HotkeyDispatcher.Hotkey() {
+                @Override
+                public void pressed() {
+                    Main.setMuted(true, dispatcher.eventMillis());
+                }
+                
+                @Override
+                public void released() {
+                    Main.setMuted(false, dispatcher.eventMillis());
+                }
+            };
         }
+        return () -> {
+            // While searching, typed keys belong to the query; only search itself stays bound
+            if (buffer.isSearchMode() && action != KeyBindingConfig.Action.SEARCH) {
+                return;
+            }
+            if (!actions.offer(action)) {
+                System.err.println("Navigation queue full, dropped " + action.getDisplayName());
+            }
+        };
     }
     
     @Override
-    public void nativeKeyReleased(NativeKeyEvent e) {
-        int keyCode = e.getKeyCode();
-        pressedKeys.remove(keyCode);
-        
-        // Reset current action if the main key was released
-        if (currentAction != null) {
-            KeyBindingConfig.KeyBinding binding = config.getBinding(currentAction);
-            if (binding != null && binding.getKeyCode() == keyCode) {
-                // If releasing the mute key, unmute
-                if (currentAction == KeyBindingConfig.Action.MUTE_WHILE_HELD) {
-                    Main.setMuted(false);
-                }
-                currentAction = null;
-            }
-        }
+    public boolean keyPressed(int keyCode, int modifiers) {
+        return buffer.isSearchMode() && handleSearchKey(keyCode);
     }
     
     @Override
-    public void nativeKeyTyped(NativeKeyEvent e) {
-        // Not used
+    public void keyTyped(char c, int modifiers) {
+        if (!buffer.isSearchMode()) {
+            return;
+        }
+        // Characters typed with a command modifier held come from hotkeys, not the query
+        int commandMask = HotkeyDispatcher.CONTROL | HotkeyDispatcher.ALT | HotkeyDispatcher.META;
+        if ((modifiers & commandMask) == 0 && c != NativeKeyEvent.CHAR_UNDEFINED && !Character.isISOControl(c)) {
+            searchQuery.append(c);
+            buffer.updateSearch(searchQuery.toString());
+        }
+    }
+    
+    /**
+     * Handles the editing keys of search mode.
+     *
+     * @return true if the key was consumed
+     */
+    private boolean handleSearchKey(int keyCode) {
+        switch (keyCode) {
+            case NativeKeyEvent.VC_ESCAPE:
+                buffer.endSearch(false);
+                return true;
+            case NativeKeyEvent.VC_ENTER:
+                buffer.endSearch(true);
+                return true;
+            case NativeKeyEvent.VC_BACKSPACE:
+                if (searchQuery.length() > 0) {
+                    searchQuery.setLength(searchQuery.length() - 1);
+                    buffer.updateSearch(searchQuery.toString());
+                }
+                return true;
+            default:
+                return false;
+        }
     }
     
     private void executeAction(KeyBindingConfig.Action action) {
@@ -109,6 +141,17 @@ public class TranscriptNavigationHandler implements NativeKeyListener {
             case CLEAR_SELECTION:
                 buffer.clearSelection();
                 break;
+            case SEARCH:
+                if (buffer.isSearchMode()) {
+                    buffer.nextSearchHit();
+                } else {
+                    searchQuery.setLength(0);
+                    buffer.beginSearch();
+                }
+                break;
+            case SELECT_RECENT:
+                buffer.selectRecent();
+                break;
         }
     }
     
@@ -130,11 +173,4 @@ public class TranscriptNavigationHandler implements NativeKeyListener {
             submitToLLM.accept(selection);
         }
     }
-    
-    private boolean isModifierKey(int keyCode) {
-        return keyCode == NativeKeyEvent.VC_SHIFT ||
-               keyCode == NativeKeyEvent.VC_CONTROL ||
-               keyCode == NativeKeyEvent.VC_ALT ||
-               keyCode == NativeKeyEvent.VC_META;
-    }
 }
\ No newline at end of file
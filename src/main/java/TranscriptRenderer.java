@@ -0,0 +1,98 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Draws screens on a dedicated thread so callers never wait on the terminal.
+ *
+ * Callers only mark the screen out of date and return immediately; the snapshot is taken
+ * from the source when the frame is drawn, so a frame always shows the latest state, however
+ * the callers' updates interleave, and building the snapshot costs the callers nothing. A
+ * burst of updates (holding a navigation key, a fast run of transcripts) collapses into at
+ * most {@code console.max.fps} frames per second.
+ * Low-priority updates such as interim results can be submitted throttled; they are
+ * drawn at most {@code interim.max.hz} times per second unless a regular update comes
+ * along and carries them out sooner.
+ *
+ * @param <S> Snapshot type laid out into screen text
+ */
+public class TranscriptRenderer<S> {
+    private static final int MAX_FPS = Integer.getInteger("console.max.fps", 30);
+    private static final int THROTTLED_MAX_HZ = Integer.getInteger("interim.max.hz", 5);
+
+    private final ConsoleDisplay console;
+    private final Supplier<S> source;
+    private final Function<S, String> layout;
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private final long frameNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, MAX_FPS);
+    private final long throttledNanos = Math.max(frameNanos, TimeUnit.SECONDS.toNanos(1) / Math.max(1, THROTTLED_MAX_HZ));
+    private volatile boolean urgent = false; // The pending frame includes a regular update
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    /**
+     * @param console Display that frames are drawn to
+     * @param source Takes a snapshot of the current state; runs on the renderer thread
+     * @param layout Turns a snapshot into screen text; runs on the renderer thread
+     */
+    public TranscriptRenderer(ConsoleDisplay console, Supplier<S> source, Function<S, String> layout) {
+        this.console = console;
+        this.source = source;
+        this.layout = layout;
+        this.thread = new Thread(this::run, "transcript-renderer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Asks for a frame of the current state.
+     */
+    public void submit() {
+        pending.set(true);
+        urgent = true;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Asks for a low-priority frame, drawn no sooner than the throttled interval after the last one.
+     */
+    public void submitThrottled() {
+        if (!pending.getAndSet(true)) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    public void close() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    private void run() {
+        long lastFrame = System.nanoTime() - frameNanos;
+        while (running) {
+            if (!pending.get()) {
+                LockSupport.park(this);
+                continue;
+            }
+
+            // Hold off until the frame interval has passed; later updates are folded into this frame
+            long wait = lastFrame + (urgent ? frameNanos : throttledNanos) - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+
+            // Cleared before the snapshot is taken, so an update racing with this frame gets its own
+            urgent = false;
+            pending.set(false);
+            try {
+                console.renderFrame(layout.apply(source.get()));
+            } catch (RuntimeException e) {
+                System.err.println("Error rendering transcript buffer: " + e.getMessage());
+            }
+            lastFrame = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,439 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Segmented on-disk transcript store.
+ *
+ * Entries are grouped into fixed-size segments. Sealed segments are immutable files
+ * (segment-N.dat with the UTF-8 text, segment-N.idx with the entry offsets) that are
+ * memory-mapped on first access and kept in a small LRU cache. Only the unsealed tail
+ * lives on the heap; it is protected by the {@link TranscriptJournal}. Startup reads the
+ * manifest and replays at most one segment's worth of journal, so it does not grow
+ * with history. Segments older than the hot window are gzip-compressed in the background.
+ *
+ * Reads never lock: the tail is published as an immutable {@link Tail} view, and sealed
+ * segments never change. Appends and sealing are serialized on the store's monitor.
+ */
+public class TranscriptStore implements Closeable {
+    private static final String MANIFEST_FILE = "segments.properties";
+    private static final int SEGMENT_ENTRIES = Integer.getInteger("transcript.segment.entries", 4096);
+    private static final int CACHED_SEGMENTS = Integer.getInteger("transcript.store.cached.segments", 8);
+    private static final int HOT_SEGMENTS = Integer.getInteger("transcript.store.hot.segments", 4);
+    private static final long JOURNAL_SYNC_MS = Long.getLong("transcript.journal.sync.ms", 1000);
+    private static final String LOST_ENTRY = "[transcript lost]"; // Stands in for records missing from the journal
+
+    private final Path directory;
+    private final ScheduledExecutorService executor;
+    private final TranscriptJournal journal;
+
+    // Replaced under this, read without locking
+    private volatile Tail tail;
+    private volatile int compressedSegments = 0;
+
+    // Guarded by this
+    private int sealedSegments = 0;
+    private boolean sealScheduled = false;
+    private final Object manifestLock = new Object();
+
+    // Sealed segments currently mapped, least recently used first
+    private final Map<Integer, Segment> segmentCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Segment> eldest) {
+            return size() > CACHED_SEGMENTS;
+        }
+    };
+
+    /**
+     * Published view of the unsealed tail. Entries live in fixed-size chunks shared by
+     * every later view; a slot is written once, before the first view covering it is
+     * published, so a reader holding any view sees a consistent, unchanging list.
+     */
+    private static final class Tail {
+        static final int CHUNK = 256;
+
+        final int base;   // store index of the first entry
+        final int offset; // slot of that entry in chunks[0]
+        final int size;
+        final String[][] chunks;
+
+        Tail(int base, int offset, int size, String[][] chunks) {
+            this.base = base;
+            this.offset = offset;
+            this.size = size;
+            this.chunks = chunks;
+        }
+
+        String get(int index) {
+            if (index < base || index >= base + size) {
+                throw new IndexOutOfBoundsException("Entry " + index + " outside tail [" + base + ", " + (base + size) + ")");
+            }
+            int slot = offset + index - base;
+            return chunks[slot / CHUNK][slot % CHUNK];
+        }
+
+        /**
+         * Only valid on the newest view; callers serialize appends.
+         */
+        Tail append(String text) {
+            int slot = offset + size;
+            String[][] spine = chunks;
+            if (slot / CHUNK == spine.length) {
+                spine = Arrays.copyOf(spine, spine.length + 1);
+                spine[spine.length - 1] = new String[CHUNK];
+            }
+            spine[slot / CHUNK][slot % CHUNK] = text;
+            return new Tail(base, offset, size + 1, spine);
+        }
+
+        Tail dropFirst(int count) {
+            int slot = offset + count;
+            return new Tail(base + count, slot % CHUNK, size - count,
+                Arrays.copyOfRange(chunks, slot / CHUNK, chunks.length));
+        }
+    }
+
+    /**
+     * An immutable sealed segment: entry offsets plus the text bytes they index.
+     */
+    private static final class Segment {
+        final IntBuffer offsets;
+        final ByteBuffer data;
+
+        Segment(IntBuffer offsets, ByteBuffer data) {
+            this.offsets = offsets;
+            this.data = data;
+        }
+
+        String get(int slot) {
+            int start = offsets.get(slot);
+            int end = offsets.get(slot + 1);
+            byte[] bytes = new byte[end - start];
+            data.get(start, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Opens (or creates) the store and recovers the unsealed tail from the journal.
+     *
+     * @param directory The directory holding segments, manifest and journal
+     * @param executor Executor used for group commits, sealing and compression
+     */
+    public TranscriptStore(Path directory, ScheduledExecutorService executor) throws IOException {
+        this.directory = directory;
+        this.executor = executor;
+        Files.createDirectories(directory);
+        readManifest();
+        tail = new Tail(sealedSegments * SEGMENT_ENTRIES, 0, 0, new String[0][]);
+
+        // Only records past the last sealed segment belong to the tail. A gap is filled with
+        // placeholders so later records, and the timeline, keep their indices
+        TranscriptJournal.replay(directory, (seq, text) -> {
+            long expected = (long) tail.base + tail.size;
+            if (seq < expected) {
+                return;
+            }
+            if (seq > expected) {
+                System.err.println("Transcript journal gap: expected entry " + expected + " but found " + seq
+                    + "; marking " + (seq - expected) + " entries lost");
+                for (long missing = expected; missing < seq; missing++) {
+                    tail = tail.append(LOST_ENTRY);
+                }
+            }
+            tail = tail.append(text);
+        });
+        journal = new TranscriptJournal(directory);
+
+        // Group commit: one fsync covers every append since the last tick
+        executor.scheduleWithFixedDelay(this::syncJournal, JOURNAL_SYNC_MS, JOURNAL_SYNC_MS, TimeUnit.MILLISECONDS);
+        scheduleSealIfNeeded();
+        executor.execute(this::compressColdSegments);
+    }
+
+    public int size() {
+        Tail current = tail;
+        return current.base + current.size;
+    }
+
+    /**
+     * @return Number of entries currently materialized on the heap
+     */
+    public int heapEntries() {
+        return tail.size;
+    }
+
+    /**
+     * Appends an entry. The journal write is buffered; durability follows on the next group commit.
+     *
+     * @return The index of the new entry
+     */
+    public synchronized int append(String text) {
+        int index = size();
+        tail = tail.append(text);
+        journal.append(index, text);
+        scheduleSealIfNeeded();
+        return index;
+    }
+
+    /**
+     * Returns an entry, mapping its segment in from disk if it is not cached.
+     */
+    public String get(int index) {
+        Tail current = tail;
+        if (index >= current.base) {
+            return current.get(index);
+        }
+        int segmentNumber = index / SEGMENT_ENTRIES;
+        try {
+            return segment(segmentNumber).get(index % SEGMENT_ENTRIES);
+        } catch (IOException e) {
+            System.err.println("Error reading transcript segment " + segmentNumber + ": " + e.getMessage());
+            return "";
+        }
+    }
+
+    public void sync() throws IOException {
+        journal.sync();
+    }
+
+    @Override
+    public void close() throws IOException {
+        journal.close();
+    }
+
+    private void syncJournal() {
+        try {
+            journal.sync();
+        } catch (IOException e) {
+            System.err.println("Error syncing transcript journal: " + e.getMessage());
+        }
+    }
+
+    private synchronized void scheduleSealIfNeeded() {
+        if (!sealScheduled && tail.size >= SEGMENT_ENTRIES) {
+            sealScheduled = true;
+            executor.execute(this::sealOldest);
+        }
+    }
+
+    /**
+     * Moves the oldest full segment's worth of tail entries into an immutable segment file.
+     */
+    private void sealOldest() {
+        List<String> entries;
+        int segmentNumber;
+        long keepFrom;
+        synchronized (this) {
+            Tail current = tail;
+            entries = new ArrayList<>(SEGMENT_ENTRIES);
+            for (int i = 0; i < SEGMENT_ENTRIES; i++) {
+                entries.add(current.get(current.base + i));
+            }
+            segmentNumber = sealedSegments;
+
+            // Everything still unsealed after this segment must survive in the new generation
+            keepFrom = journal.rotate();
+            for (int i = current.base + SEGMENT_ENTRIES; i < current.base + current.size; i++) {
+                journal.append(i, current.get(i));
+            }
+        }
+
+        try {
+            writeSegment(segmentNumber, entries);
+            synchronized (this) {
+                tail = tail.dropFirst(SEGMENT_ENTRIES);
+                sealedSegments++;
+            }
+            writeManifest();
+            journal.sync();
+            journal.deleteGenerationsBefore(keepFrom);
+        } catch (IOException e) {
+            System.err.println("Error sealing transcript segment " + segmentNumber + ": " + e.getMessage());
+            // The tail is still journaled; try again later rather than spinning on a full disk
+            executor.schedule(this::sealOldest, 30, TimeUnit.SECONDS);
+            return;
+        }
+
+        synchronized (this) {
+            sealScheduled = false;
+            scheduleSealIfNeeded();
+        }
+        compressColdSegments();
+    }
+
+    private void writeSegment(int segmentNumber, List<String> entries) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream(entries.size() * 64);
+        ByteBuffer offsets = ByteBuffer.allocate((entries.size() + 1) * Integer.BYTES);
+        for (String entry : entries) {
+            offsets.putInt(data.size());
+            data.write(entry.getBytes(StandardCharsets.UTF_8));
+        }
+        offsets.putInt(data.size());
+
+        writeDurably(dataPath(segmentNumber), ByteBuffer.wrap(data.toByteArray()));
+        writeDurably(indexPath(segmentNumber), offsets.flip());
+    }
+
+    /**
+     * Gzips sealed segments that have fallen out of the hot window.
+     */
+    private void compressColdSegments() {
+        while (true) {
+            int segmentNumber;
+            synchronized (this) {
+                if (compressedSegments >= sealedSegments - HOT_SEGMENTS) {
+                    return;
+                }
+                segmentNumber = compressedSegments;
+            }
+
+            try {
+                Path source = dataPath(segmentNumber);
+                Path target = compressedPath(segmentNumber);
+                Path tmp = directory.resolve(target.getFileName() + ".tmp");
+                try (InputStream in = Files.newInputStream(source);
+                     OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+                    in.transferTo(out);
+                }
+                force(tmp);
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+                synchronized (this) {
+                    compressedSegments = segmentNumber + 1;
+                }
+                writeManifest();
+                synchronized (segmentCache) {
+                    segmentCache.remove(segmentNumber);
+                }
+                Files.deleteIfExists(source);
+            } catch (IOException e) {
+                System.err.println("Error compressing transcript segment " + segmentNumber + ": " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private Segment segment(int segmentNumber) throws IOException {
+        synchronized (segmentCache) {
+            Segment cached = segmentCache.get(segmentNumber);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        boolean compressed = segmentNumber < compressedSegments;
+        IntBuffer offsets = map(indexPath(segmentNumber)).asIntBuffer();
+        ByteBuffer data;
+        if (compressed) {
+            data = readCompressed(segmentNumber);
+        } else {
+            try {
+                data = map(dataPath(segmentNumber));
+            } catch (NoSuchFileException e) {
+                // Compressed and deleted since the check; the .gz is published before the delete
+                if (segmentNumber >= compressedSegments) {
+                    throw e;
+                }
+                compressed = true;
+                data = readCompressed(segmentNumber);
+            }
+        }
+
+        Segment segment = new Segment(offsets, data);
+        synchronized (segmentCache) {
+            // A mapping of a file compressed meanwhile would outlive the eviction and pin the deleted file
+            if (compressed || segmentNumber >= compressedSegments) {
+                segmentCache.put(segmentNumber, segment);
+            }
+        }
+        return segment;
+    }
+
+    private ByteBuffer readCompressed(int segmentNumber) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(compressedPath(segmentNumber)))) {
+            return ByteBuffer.wrap(in.readAllBytes());
+        }
+    }
+
+    private static MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private void readManifest() throws IOException {
+        Path path = directory.resolve(MANIFEST_FILE);
+        if (!Files.exists(path)) {
+            return;
+        }
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(path)) {
+            props.load(in);
+        }
+        sealedSegments = Integer.parseInt(props.getProperty("sealed", "0"));
+        compressedSegments = Integer.parseInt(props.getProperty("compressed", "0"));
+        int entries = Integer.parseInt(props.getProperty("segment.entries", String.valueOf(SEGMENT_ENTRIES)));
+        if (entries != SEGMENT_ENTRIES) {
+            throw new IOException("Store was written with " + entries + " entries per segment, configured " + SEGMENT_ENTRIES);
+        }
+    }
+
+    private void writeManifest() throws IOException {
+        synchronized (manifestLock) {
+            Properties props = new Properties();
+            synchronized (this) {
+                props.setProperty("sealed", String.valueOf(sealedSegments));
+                props.setProperty("compressed", String.valueOf(compressedSegments));
+            }
+            props.setProperty("segment.entries", String.valueOf(SEGMENT_ENTRIES));
+
+            Path path = directory.resolve(MANIFEST_FILE);
+            Path tmp = directory.resolve(MANIFEST_FILE + ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                props.store(out, "Transcript segment manifest");
+            }
+            force(tmp);
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private void writeDurably(Path path, ByteBuffer bytes) throws IOException {
+        Path tmp = directory.resolve(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void force(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    private Path dataPath(int segmentNumber) {
+        return directory.resolve(String.format("segment-%08d.dat", segmentNumber));
+    }
+
+    private Path compressedPath(int segmentNumber) {
+        return directory.resolve(String.format("segment-%08d.dat.gz", segmentNumber));
+    }
+
+    private Path indexPath(int segmentNumber) {
+        return directory.resolve(String.format("segment-%08d.idx", segmentNumber));
+    }
+}
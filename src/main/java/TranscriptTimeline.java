@@ -0,0 +1,364 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Per-entry capture metadata, parallel to the transcript store.
+ *
+ * Each entry has its capture start/end time (epoch millis), recognizer confidence, the
+ * audio frame range it was heard in, the id of the recognizer stream that produced it and
+ * how much of its span was muted, so a transcript with a gap can be told from one without.
+ * Times are forced non-decreasing as entries are appended, so time-range queries are
+ * binary searches rather than scans.
+ *
+ * Metadata is persisted as fixed-size records in one file, written by group commit. Like
+ * the store's sealed segments, records already on disk are read through a memory mapping,
+ * and only the records since the last remap live on the heap, in primitive columns; a sync
+ * that leaves {@code transcript.timeline.remap.entries} of them on disk maps them and drops
+ * the columns. So opening a timeline costs the same however long the history is.
+ *
+ * The file starts with a header naming the first entry that has a record. Entries before
+ * it (history from before the timeline existed) have no metadata and are never padded
+ * out on disk: they report time 0 and unknown frames, stream, confidence and muted time.
+ * A file written with a different record size starts over the same way.
+ *
+ * Readers never lock: a slot is filled before the published size covers it, and a new
+ * mapping or column generation is published before the size that needs it.
+ */
+public class TranscriptTimeline implements Closeable {
+    public static final int UNKNOWN = -1;
+    private static final int RECORD_BYTES = 8 + 8 + 4 + 4 + 4 + 4 + 4;
+    private static final int HEADER_BYTES = 32; // Magic, record size, first entry with a record
+    private static final int MAGIC = 0x544C4E31; // "TLN1"
+    private static final int REMAP_ENTRIES = Integer.getInteger("transcript.timeline.remap.entries", 4096);
+
+    /**
+     * Heap columns for the entries from {@code base} on; replaced wholesale when full or remapped.
+     */
+    private static final class Columns {
+        final int base;
+        final long[] startMillis;
+        final long[] endMillis;
+        final float[] confidence;
+        final int[] startFrame;
+        final int[] endFrame;
+        final int[] streamId;
+        final int[] mutedMillis;
+
+        Columns(int base, int capacity) {
+            this.base = base;
+            startMillis = new long[capacity];
+            endMillis = new long[capacity];
+            confidence = new float[capacity];
+            startFrame = new int[capacity];
+            endFrame = new int[capacity];
+            streamId = new int[capacity];
+            mutedMillis = new int[capacity];
+        }
+
+        /**
+         * @return Columns from {@code newBase} on, holding this generation's entries up to {@code end}
+         */
+        Columns copy(int newBase, int end, int capacity) {
+            Columns copied = new Columns(newBase, capacity);
+            int from = newBase - base;
+            int n = end - newBase;
+            System.arraycopy(startMillis, from, copied.startMillis, 0, n);
+            System.arraycopy(endMillis, from, copied.endMillis, 0, n);
+            System.arraycopy(confidence, from, copied.confidence, 0, n);
+            System.arraycopy(startFrame, from, copied.startFrame, 0, n);
+            System.arraycopy(endFrame, from, copied.endFrame, 0, n);
+            System.arraycopy(streamId, from, copied.streamId, 0, n);
+            System.arraycopy(mutedMillis, from, copied.mutedMillis, 0, n);
+            return copied;
+        }
+    }
+
+    /**
+     * Where each entry's metadata is read from: nowhere before {@code firstEntry}, the mapping
+     * up to {@code tail.base}, the heap columns after.
+     */
+    private static final class Layout {
+        final int firstEntry;
+        final ByteBuffer mapped;
+        final Columns tail;
+
+        Layout(int firstEntry, ByteBuffer mapped, Columns tail) {
+            this.firstEntry = firstEntry;
+            this.mapped = mapped;
+            this.tail = tail;
+        }
+    }
+
+    private final FileChannel channel;
+    private volatile Layout layout;
+    private volatile int size = 0;
+
+    // Guarded by this
+    private long lastStart = 0;
+    private long lastEnd = 0;
+    private ByteBuffer pending = ByteBuffer.allocate(RECORD_BYTES * 64);
+    private int pendingEntries = 0;
+
+    // Entries whose records have been written, guarded by channel
+    private int written;
+
+    /**
+     * Opens the timeline file and maps its records, then truncates or pads them to
+     * {@code entries} so they line up with the store after a crash that lost one side's
+     * newest records. A missing or unreadable file starts over at {@code entries}.
+     */
+    public TranscriptTimeline(Path file, int entries) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int firstEntry = entries;
+        long records = 0;
+        if (channel.size() >= HEADER_BYTES) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                // Read the whole header
+            }
+            if (header.getInt(0) == MAGIC && header.getInt(4) == RECORD_BYTES && header.getLong(8) <= entries) {
+                firstEntry = (int) header.getLong(8);
+                records = Math.min(entries - firstEntry, (channel.size() - HEADER_BYTES) / RECORD_BYTES);
+            }
+        }
+        if (firstEntry == entries && records == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(0, MAGIC).putInt(4, RECORD_BYTES).putLong(8, firstEntry);
+            channel.truncate(0);
+            channel.write(header, 0);
+        }
+        channel.truncate(HEADER_BYTES + records * RECORD_BYTES);
+        channel.position(HEADER_BYTES + records * RECORD_BYTES);
+
+        int mappedEnd = firstEntry + (int) records;
+        layout = new Layout(firstEntry, map(records), new Columns(mappedEnd, 1024));
+        size = mappedEnd;
+        written = mappedEnd;
+        if (records > 0) {
+            lastStart = getStartMillis(mappedEnd - 1);
+            lastEnd = getEndMillis(mappedEnd - 1);
+        }
+
+        // Only a crash leaves entries short of a record, at most a sync interval's worth
+        while (size < entries) {
+            append(UNKNOWN, UNKNOWN, Float.NaN, UNKNOWN, UNKNOWN, UNKNOWN, UNKNOWN);
+        }
+    }
+
+    private ByteBuffer map(long records) throws IOException {
+        if (records == 0) {
+            return ByteBuffer.allocate(0);
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, records * RECORD_BYTES);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Appends the metadata for the next entry. Callers append in store order.
+     *
+     * @return The entry index
+     */
+    public synchronized int append(long startMillis, long endMillis, float confidence,
+                                   int startFrame, int endFrame, int streamId, int mutedMillis) {
+        int index = size;
+        Layout current = layout;
+        Columns c = current.tail;
+        if (index - c.base == c.startMillis.length) {
+            c = c.copy(c.base, index, c.startMillis.length * 2);
+            layout = new Layout(current.firstEntry, current.mapped, c);
+        }
+
+        // Keep both time columns sorted; unknown times inherit the previous entry's
+        long end = Math.max(endMillis, lastEnd);
+        long start = Math.max(startMillis == UNKNOWN ? end : Math.min(startMillis, end), lastStart);
+        int slot = index - c.base;
+        c.startMillis[slot] = start;
+        c.endMillis[slot] = end;
+        c.confidence[slot] = confidence;
+        c.startFrame[slot] = startFrame;
+        c.endFrame[slot] = endFrame;
+        c.streamId[slot] = streamId;
+        c.mutedMillis[slot] = mutedMillis;
+        lastStart = start;
+        lastEnd = end;
+        size = index + 1;
+
+        if (pending.remaining() < RECORD_BYTES) {
+            pending = ByteBuffer.allocate(pending.capacity() * 2).put(pending.flip());
+        }
+        pending.putLong(start).putLong(end).putFloat(confidence).putInt(startFrame).putInt(endFrame).putInt(streamId)
+            .putInt(mutedMillis);
+        pendingEntries++;
+        return index;
+    }
+
+    public long getStartMillis(int index) {
+        Layout l = layout;
+        if (index < l.firstEntry) {
+            return 0;
+        }
+        return index < l.tail.base ? l.mapped.getLong(offset(l, index))
+            : l.tail.startMillis[index - l.tail.base];
+    }
+
+    public long getEndMillis(int index) {
+        Layout l = layout;
+        if (index < l.firstEntry) {
+            return 0;
+        }
+        return index < l.tail.base ? l.mapped.getLong(offset(l, index) + 8)
+            : l.tail.endMillis[index - l.tail.base];
+    }
+
+    public float getConfidence(int index) {
+        Layout l = layout;
+        if (index < l.firstEntry) {
+            return Float.NaN;
+        }
+        return index < l.tail.base ? l.mapped.getFloat(offset(l, index) + 16)
+            : l.tail.confidence[index - l.tail.base];
+    }
+
+    public int getStartFrame(int index) {
+        Layout l = layout;
+        if (index < l.firstEntry) {
+            return UNKNOWN;
+        }
+        return index < l.tail.base ? l.mapped.getInt(offset(l, index) + 20)
+            : l.tail.startFrame[index - l.tail.base];
+    }
+
+    public int getEndFrame(int index) {
+        Layout l = layout;
+        if (index < l.firstEntry) {
+            return UNKNOWN;
+        }
+        return index < l.tail.base ? l.mapped.getInt(offset(l, index) + 24)
+            : l.tail.endFrame[index - l.tail.base];
+    }
+
+    public int getStreamId(int index) {
+        Layout l = layout;
+        if (index < l.firstEntry) {
+            return UNKNOWN;
+        }
+        return index < l.tail.base ? l.mapped.getInt(offset(l, index) + 28)
+            : l.tail.streamId[index - l.tail.base];
+    }
+
+    /**
+     * @return Milliseconds of the entry's span that were muted, or -1 if not known
+     */
+    public int getMutedMillis(int index) {
+        Layout l = layout;
+        if (index < l.firstEntry) {
+            return UNKNOWN;
+        }
+        return index < l.tail.base ? l.mapped.getInt(offset(l, index) + 32)
+            : l.tail.mutedMillis[index - l.tail.base];
+    }
+
+    private static int offset(Layout l, int index) {
+        return (index - l.firstEntry) * RECORD_BYTES;
+    }
+
+    /**
+     * @return The first entry still being spoken at or after {@code millis}, or size() if none
+     */
+    public int firstEndingAtOrAfter(long millis) {
+        int n = size;
+        int low = 0;
+        int high = n;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getEndMillis(mid) < millis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return The last entry that had started by {@code millis}, or -1 if none
+     */
+    public int lastStartingAtOrBefore(long millis) {
+        int n = size;
+        int low = 0;
+        int high = n;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getStartMillis(mid) <= millis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low - 1;
+    }
+
+    /**
+     * Writes and forces every record appended since the last sync, and maps them once
+     * enough have collected on the heap.
+     */
+    public void sync() throws IOException {
+        // Holding the channel across the hand-off keeps concurrent syncs writing in order
+        synchronized (channel) {
+            ByteBuffer batch;
+            int entries;
+            synchronized (this) {
+                if (pending.position() == 0) {
+                    return;
+                }
+                batch = pending.flip();
+                entries = pendingEntries;
+                pending = ByteBuffer.allocate(batch.capacity());
+                pendingEntries = 0;
+            }
+            PipelineEvents.TranscriptPersist event = new PipelineEvents.TranscriptPersist();
+            event.begin();
+            long bytes = batch.remaining();
+            while (batch.hasRemaining()) {
+                channel.write(batch);
+            }
+            channel.force(false);
+            written += entries;
+            if (event.shouldCommit()) {
+                event.file = "timeline";
+                event.bytes = bytes;
+                event.commit();
+            }
+
+            if (written - layout.tail.base >= REMAP_ENTRIES) {
+                remap();
+            }
+        }
+    }
+
+    /**
+     * Maps every written record and keeps only the unwritten ones on the heap.
+     */
+    private void remap() throws IOException {
+        Layout current = layout;
+        ByteBuffer mapped = map(written - current.firstEntry);
+        synchronized (this) {
+            Columns tail = layout.tail;
+            int capacity = Math.max(1024, Integer.highestOneBit(Math.max(1, size - written)) * 2);
+            layout = new Layout(current.firstEntry, mapped, tail.copy(written, size, capacity));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        sync();
+        channel.close();
+    }
+}
@@ -1,14 +1,90 @@
 import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Talks to the Python VAD process over one of two transports, picked by {@code vad.transport}:
+ * <ul>
+ *   <li>{@code pipe} (default): frames are written to the script's stdin and each decision
+ *       comes back as a "1"/"0" line on stdout.</li>
+ *   <li>{@code shm}: frames are copied into a ring in a memory-mapped file and decisions come
+ *       back as a bitmap in the same mapping. Two sequence counters in the header are the only
+ *       handshake; both sides poll them, so no system call is made per frame. x86 only: the
+ *       script has no fences, and only x86 keeps its plain stores and loads in order. Elsewhere
+ *       the pipe is used instead.</li>
+ * </ul>
+ *
+ * Shared file layout (little-endian): a 64-byte header holding the magic, slot count and
+ * frame size, then the submitted sequence at {@link #SUBMITTED} (written only by Java; -1
+ * asks the script to exit) and the completed sequence at {@link #COMPLETED} (written only by
+ * the script). Then {@code SLOTS} frames, then one decision bit per slot. Frame {@code n}
+ * lives in slot {@code n % SLOTS}.
+ */
 public class VADChecker {
+    public static final int FRAME_BYTES = 320;
+    private static final String VAD_SCRIPT_PATH = System.getProperty("vad.script",
+        "/Users/c/IdeaProjects/untitled1/python-vad-detector/vad_check.py");
+    private static final boolean SHARED_MEMORY = "shm".equals(System.getProperty("vad.transport", "pipe"));
+    private static final boolean ORDERED_STORES = System.getProperty("os.arch", "").matches("x86_64|amd64|x86|i[3-6]86");
+    private static final long SHM_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("vad.shm.timeout.ms", 500));
+
+    private static final long START_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("vad.start.timeout.ms", 5000));
+
+    private static final int MAGIC = 0x56414431; // "VAD1"
+    private static final int SLOTS = 256;
+    private static final int SUBMITTED = 16;
+    private static final int COMPLETED = 24;
+    private static final int DATA = 64;
+    private static final int BITMAP = DATA + SLOTS * FRAME_BYTES;
+    private static final int MAPPING_BYTES = BITMAP + SLOTS / 8;
+    private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 2000 : 0;
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final boolean sharedMemory;
+    private final WorkerScope workers;
+    private WorkerScope processScope;
     private Process vadProcess;
     private OutputStream stdin;
     private BufferedReader stdout;
     private BufferedReader stderr;
     private AtomicBoolean isRunning = new AtomicBoolean(false);
-    private static final String VAD_SCRIPT_PATH = "/Users/c/IdeaProjects/untitled1/python-vad-detector/vad_check.py";
+
+    // Shared-memory transport
+    private Path ringFile;
+    private MappedByteBuffer ring;
+    private long submitted = 0;
+
+    /**
+     * Uses the transport chosen by {@code vad.transport}.
+     *
+     * @param workers Scope the process's stderr reader runs in
+     */
+    public VADChecker(WorkerScope workers) {
+        this(SHARED_MEMORY, workers);
+    }
+
+    /**
+     * @param sharedMemory True for the shared-memory ring, false for stdin/stdout
+     * @param workers Scope the process's stderr reader runs in
+     */
+    public VADChecker(boolean sharedMemory, WorkerScope workers) {
+        if (sharedMemory && !ORDERED_STORES) {
+            System.err.println("vad.transport=shm needs x86 memory ordering, not " + System.getProperty("os.arch") + "; using the pipe");
+            sharedMemory = false;
+        }
+        this.sharedMemory = sharedMemory;
+        this.workers = workers;
+    }
 
     public void start() throws IOException {
         // Check if Python script exists
@@ -18,6 +94,18 @@ public class VADChecker {
         }
         
         ProcessBuilder builder = new ProcessBuilder("python3", VAD_SCRIPT_PATH);
+        if (sharedMemory) {
+            ringFile = Files.createTempFile("vad-ring", ".shm");
+            ringFile.toFile().deleteOnExit();
+            try (FileChannel channel = FileChannel.open(ringFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ring = channel.map(FileChannel.MapMode.READ_WRITE, 0, MAPPING_BYTES);
+            }
+            ring.order(ByteOrder.LITTLE_ENDIAN);
+            ring.putInt(0, MAGIC).putInt(4, SLOTS).putInt(8, FRAME_BYTES);
+            submitted = 0;
+            builder.command().add("--shm");
+            builder.command().add(ringFile.toString());
+        }
         builder.redirectErrorStream(false);
         
         System.out.println("Starting VAD process: " + String.join(" ", builder.command()));
@@ -27,28 +115,38 @@ public class VADChecker {
         stdout = new BufferedReader(new InputStreamReader(vadProcess.getInputStream()));
         stderr = new BufferedReader(new InputStreamReader(vadProcess.getErrorStream()));
         
-        // Start error reader thread
-        Thread errorReader = new Thread(() -> {
+        // Start error reader thread; the script announces itself there once the detector is loaded
+        CountDownLatch ready = new CountDownLatch(1);
+        processScope = workers.child("vad-process");
+        processScope.fork(() -> {
             try {
                 String line;
                 while ((line = stderr.readLine()) != null) {
                     System.err.println("VAD Python: " + line);
+                    if (line.startsWith("VAD initialized")) {
+                        ready.countDown();
+                    }
                 }
             } catch (IOException e) {
                 System.err.println("VAD error reader terminated");
             }
         });
-        errorReader.setDaemon(true);
-        errorReader.start();
         
-        // Wait a bit to see if process starts successfully
+        // Wait until the detector is loaded, rather than a fixed time, or until the process dies
         try {
-            Thread.sleep(100);
-            if (!vadProcess.isAlive()) {
-                throw new IOException("VAD process failed to start. Exit code: " + vadProcess.exitValue());
+            long deadline = System.nanoTime() + START_TIMEOUT_NANOS;
+            while (!ready.await(10, TimeUnit.MILLISECONDS)) {
+                if (!vadProcess.isAlive()) {
+                    throw new IOException("VAD process failed to start. Exit code: " + vadProcess.exitValue());
+                }
+                if (System.nanoTime() > deadline) {
+                    vadProcess.destroyForcibly();
+                    throw new IOException("VAD process did not initialize within " + TimeUnit.NANOSECONDS.toMillis(START_TIMEOUT_NANOS) + " ms");
+                }
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while the VAD process was starting");
         }
         
         isRunning.set(true);
@@ -56,39 +154,109 @@ public class VADChecker {
     }
 
     public boolean isSpeech(byte[] audioChunk) throws IOException {
+        if (audioChunk.length != FRAME_BYTES) {
+            throw new IllegalArgumentException("Audio chunk must be exactly 320 bytes, got " + audioChunk.length);
+        }
+        boolean[] decision = new boolean[1];
+        classify(audioChunk, 0, 1, decision);
+        return decision[0];
+    }
+
+    /**
+     * Classifies {@code frames} consecutive 320-byte frames in one exchange with the script.
+     *
+     * @param audio Buffer holding the frames
+     * @param offset Where the first frame starts
+     * @param voiced Receives the decision for each frame
+     */
+    public void classify(byte[] audio, int offset, int frames, boolean[] voiced) throws IOException {
         if (!isRunning.get()) {
             throw new IOException("VAD checker is not running");
         }
-        
-        if (audioChunk.length != 320) {
-            throw new IllegalArgumentException("Audio chunk must be exactly 320 bytes, got " + audioChunk.length);
+        if (frames > SLOTS) {
+            throw new IllegalArgumentException("At most " + SLOTS + " frames per call, got " + frames);
+        }
+        if (sharedMemory) {
+            classifyShared(audio, offset, frames, voiced);
+            return;
         }
         
         try {
-            stdin.write(audioChunk);
+            stdin.write(audio, offset, frames * FRAME_BYTES);
             stdin.flush();
-            String response = stdout.readLine();
-            if (response == null) {
-                isRunning.set(false);
-                throw new IOException("VAD process terminated unexpectedly");
+            for (int i = 0; i < frames; i++) {
+                String response = stdout.readLine();
+                if (response == null) {
+                    isRunning.set(false);
+                    throw new IOException("VAD process terminated unexpectedly");
+                }
+                voiced[i] = "1".equals(response.trim());
             }
-            return "1".equals(response.trim());
         } catch (IOException e) {
             isRunning.set(false);
             throw new IOException("VAD communication error: " + e.getMessage(), e);
         }
     }
 
+    private void classifyShared(byte[] audio, int offset, int frames, boolean[] voiced) throws IOException {
+        for (int i = 0; i < frames; i++) {
+            int slot = (int) ((submitted + i) % SLOTS);
+            ring.put(DATA + slot * FRAME_BYTES, audio, offset + i * FRAME_BYTES, FRAME_BYTES);
+        }
+        long target = submitted + frames;
+        LONG.setRelease(ring, SUBMITTED, target);
+
+        // Spin briefly since the script usually answers within microseconds, then yield and
+        // back off; with a single CPU spinning only keeps the script from running
+        long deadline = System.nanoTime() + SHM_TIMEOUT_NANOS;
+        int waits = 0;
+        while ((long) LONG.getAcquire(ring, COMPLETED) < target) {
+            waits++;
+            if (waits < SPINS) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if (waits < SPINS + 50) {
+                Thread.yield();
+                continue;
+            }
+            if (System.nanoTime() > deadline || !vadProcess.isAlive()) {
+                isRunning.set(false);
+                throw new IOException(vadProcess.isAlive() ? "VAD process stopped answering" : "VAD process terminated unexpectedly");
+            }
+            LockSupport.parkNanos(20_000);
+        }
+
+        for (int i = 0; i < frames; i++) {
+            int slot = (int) ((submitted + i) % SLOTS);
+            voiced[i] = (ring.get(BITMAP + slot / 8) & (1 << (slot % 8))) != 0;
+        }
+        submitted = target;
+    }
+
     public void stop() throws IOException, InterruptedException {
         isRunning.set(false);
+        if (ring != null) {
+            LONG.setRelease(ring, SUBMITTED, -1L);
+        }
         if (stdin != null) {
             stdin.close();
         }
-        if (vadProcess != null) {
-            vadProcess.waitFor(1, TimeUnit.SECONDS);
-            if (vadProcess.isAlive()) {
+        try {
+            if (vadProcess != null) {
+                vadProcess.waitFor(1, TimeUnit.SECONDS);
+            }
+        } finally {
+            // Also when interrupted, so nothing outlives a checker that failed to start
+            if (vadProcess != null && vadProcess.isAlive()) {
                 vadProcess.destroyForcibly();
             }
+            if (processScope != null) {
+                processScope.close(); // stderr hits end of stream once the process is gone
+            }
+            if (ringFile != null) {
+                Files.deleteIfExists(ringFile);
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,189 @@
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the Python VAD running and decides speech without it while it is down.
+ *
+ * When the detector fails, it is restarted in the background after a backoff that
+ * doubles from {@code vad.restart.backoff.ms} up to {@code vad.restart.max.backoff.ms}
+ * (and starts over once a detector has stayed up for a minute). Until it is back,
+ * {@link #classify} answers from an {@link EnergyGate} instead of treating everything
+ * as speech, and audio sent on those answers is counted so the degraded time is visible.
+ *
+ * {@link #classify} is called from the VAD stage thread only. Which chunks were decided by
+ * the energy gate travels with the chunk, so {@link #sentUngated} can be called from the send stage.
+ */
+public class VADSupervisor {
+    private static final long INITIAL_BACKOFF_MS = Long.getLong("vad.restart.backoff.ms", 500);
+    private static final long MAX_BACKOFF_MS = Long.getLong("vad.restart.max.backoff.ms", 30_000);
+    private static final long HEALTHY_MS = 60_000;
+    private static final int BYTES_PER_SECOND = 32_000;
+
+    private final ScheduledExecutorService restarter = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "vad-supervisor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final WorkerScope workers;
+    private final EnergyGate fallback = new EnergyGate();
+    private final AtomicLong restarts = new AtomicLong();
+    private final AtomicLong ungatedBytes = new AtomicLong();
+
+    // Set by the restarter once a detector is up; cleared by the VAD stage thread when it fails
+    private volatile VADChecker checker;
+    private volatile boolean stopped = false;
+
+    private volatile long startedMillis;
+
+    // VAD stage thread state
+    private long backoffMs = INITIAL_BACKOFF_MS;
+
+    /**
+     * @param workers Scope the detectors' stderr readers run in
+     */
+    public VADSupervisor(WorkerScope workers) {
+        this.workers = workers;
+    }
+
+    /**
+     * Starts the detector. If it cannot start, capture begins on the energy gate and
+     * the detector is retried in the background.
+     */
+    public void start() {
+        VADChecker first = new VADChecker(workers);
+        try {
+            first.start();
+            startedMillis = System.currentTimeMillis();
+            checker = first;
+        } catch (IOException e) {
+            stopQuietly(first);
+            System.err.println("VAD failed to start (" + e.getMessage() + "); using energy gate until it does");
+            scheduleRestart();
+        }
+    }
+
+    /**
+     * Classifies consecutive 320-byte frames in one exchange with the detector; never throws.
+     *
+     * @param voiced Receives the decision for each frame
+     * @return True if the decisions came from the energy gate because the detector is down
+     */
+    public boolean classify(byte[] audio, int offset, int frames, boolean[] voiced) {
+        PipelineEvents.VadBatch event = new PipelineEvents.VadBatch();
+        event.begin();
+        boolean fromFallback = classifyFrames(audio, offset, frames, voiced);
+        if (event.shouldCommit()) {
+            event.frames = frames;
+            for (int i = 0; i < frames; i++) {
+                event.voiced += voiced[i] ? 1 : 0;
+            }
+            event.fallback = fromFallback;
+            event.commit();
+        }
+        return fromFallback;
+    }
+
+    private boolean classifyFrames(byte[] audio, int offset, int frames, boolean[] voiced) {
+        VADChecker current = checker;
+        if (current != null) {
+            try {
+                current.classify(audio, offset, frames, voiced);
+                return false;
+            } catch (IOException e) {
+                failed(current, e);
+            }
+        }
+        for (int i = 0; i < frames; i++) {
+            voiced[i] = fallback.isSpeech(audio, offset + i * VADChecker.FRAME_BYTES, VADChecker.FRAME_BYTES);
+        }
+        return true;
+    }
+
+    private void failed(VADChecker current, IOException e) {
+        System.err.println("VAD failed (" + e.getMessage() + "); using energy gate while it restarts");
+        checker = null;
+        restarter.execute(() -> stopQuietly(current)); // Waiting on the process is not for this thread
+        if (System.currentTimeMillis() - startedMillis > HEALTHY_MS) {
+            backoffMs = INITIAL_BACKOFF_MS;
+        }
+        scheduleRestart();
+    }
+
+    /**
+     * Records audio sent on the energy gate's decisions.
+     */
+    public void sentUngated(int bytes) {
+        ungatedBytes.addAndGet(bytes);
+    }
+
+    /**
+     * @return True while answers come from the detector rather than the energy gate
+     */
+    public boolean isHealthy() {
+        return checker != null;
+    }
+
+    public long getRestarts() {
+        return restarts.get();
+    }
+
+    /**
+     * @return Bytes of audio sent on the energy gate's say-so while the detector was down
+     */
+    public long getUngatedBytes() {
+        return ungatedBytes.get();
+    }
+
+    public void stop() throws IOException, InterruptedException {
+        stopped = true;
+        restarter.shutdownNow();
+        VADChecker current = checker;
+        checker = null;
+        if (current != null) {
+            current.stop();
+        }
+    }
+
+    private void scheduleRestart() {
+        long delay = backoffMs;
+        backoffMs = Math.min(MAX_BACKOFF_MS, backoffMs * 2);
+        restarter.schedule(() -> restart(delay), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs on the restarter thread; retries with growing backoff until a detector starts.
+     */
+    private void restart(long lastDelay) {
+        if (stopped) {
+            return;
+        }
+        VADChecker replacement = new VADChecker(workers);
+        try {
+            replacement.start();
+        } catch (IOException e) {
+            stopQuietly(replacement);
+            long delay = Math.min(MAX_BACKOFF_MS, lastDelay * 2);
+            System.err.println("VAD restart failed (" + e.getMessage() + "); retrying in " + delay + " ms");
+            restarter.schedule(() -> restart(delay), delay, TimeUnit.MILLISECONDS);
+            return;
+        }
+        long count = restarts.incrementAndGet();
+        startedMillis = System.currentTimeMillis();
+        checker = replacement;
+        System.err.printf("VAD restarted (%d restart%s, %.1f s of audio sent on the energy gate so far)%n",
+            count, count == 1 ? "" : "s", ungatedBytes.get() / (double) BYTES_PER_SECOND);
+    }
+
+    private static void stopQuietly(VADChecker checker) {
+        try {
+            checker.stop();
+        } catch (IOException e) {
+            // The process is being replaced either way
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares the cost of VAD decisions over the stdin/stdout pipe and the shared-memory ring.
+ *
+ * Each transport classifies the same synthetic audio, one frame per call (the old
+ * per-chunk pattern) and a capture read's worth of frames per call. Needs python3 and
+ * the script's requirements; point {@code vad.script} at vad_check.py.
+ *
+ * Usage: java -Dvad.script=python-vad-detector/vad_check.py VADTransportBenchmark [frames]   (default 20,000)
+ */
+public class VADTransportBenchmark {
+    private static final int BATCH = 12; // Frames per capture read
+
+    public static void main(String[] args) throws Exception {
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+
+        // Alternating tone and noise, so the detector has both kinds of frame to decide
+        byte[] audio = new byte[BATCH * VADChecker.FRAME_BYTES * 64];
+        Random random = new Random(42);
+        for (int i = 0; i < audio.length / 2; i++) {
+            boolean tone = (i / 1600) % 2 == 0;
+            int sample = (int) (random.nextGaussian() * 200 + (tone ? 6000 * Math.sin(i * 0.1) : 0));
+            audio[2 * i] = (byte) sample;
+            audio[2 * i + 1] = (byte) (sample >> 8);
+        }
+
+        WorkerScope workers = WorkerScope.open("vad-benchmark");
+        System.out.println("=== VAD Transport Benchmark ===");
+        boolean[] pipeDecisions = run("pipe", false, workers, audio, frames, 1);
+        run("pipe", false, workers, audio, frames, BATCH);
+        boolean[] shmDecisions = run("shm", true, workers, audio, frames, 1);
+        run("shm", true, workers, audio, frames, BATCH);
+        workers.close();
+        System.out.println("Decisions agree: " + Arrays.equals(pipeDecisions, shmDecisions));
+    }
+
+    private static boolean[] run(String name, boolean sharedMemory, WorkerScope workers, byte[] audio,
+                                 int frames, int batch) throws Exception {
+        VADChecker checker = new VADChecker(sharedMemory, workers);
+        checker.start();
+        int framesInAudio = audio.length / VADChecker.FRAME_BYTES;
+        boolean[] voiced = new boolean[batch];
+        boolean[] decisions = new boolean[framesInAudio];
+        long[] latencies = new long[frames / batch];
+
+        // Warm up both sides before timing
+        for (int i = 0; i < 500; i++) {
+            checker.classify(audio, (i % framesInAudio) * VADChecker.FRAME_BYTES, 1, voiced);
+        }
+
+        long start = System.nanoTime();
+        for (int call = 0; call < latencies.length; call++) {
+            int first = (call * batch) % (framesInAudio - batch + 1);
+            long t0 = System.nanoTime();
+            checker.classify(audio, first * VADChecker.FRAME_BYTES, batch, voiced);
+            latencies[call] = System.nanoTime() - t0;
+            System.arraycopy(voiced, 0, decisions, first, batch);
+        }
+        long elapsed = System.nanoTime() - start;
+        checker.stop();
+
+        Arrays.sort(latencies);
+        int calls = latencies.length;
+        System.out.printf("%-4s %2d frame%s/call: %,8.1f frames/s  per call p50 %6.1f us  p99 %7.1f us  max %8.1f us%n",
+            name, batch, batch == 1 ? " " : "s",
+            calls * batch / (elapsed / 1_000_000_000.0),
+            latencies[calls / 2] / 1_000.0,
+            latencies[calls * 99 / 100] / 1_000.0,
+            latencies[calls - 1] / 1_000.0);
+        return decisions;
+    }
+}
@@ -0,0 +1,196 @@
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs blocking workers as a tree of scopes that are cancelled and joined as a unit.
+ *
+ * A root scope owns the executor; child scopes share it but track only their own tasks,
+ * so closing a child (one recognizer stream, one VAD process) interrupts its tasks and
+ * waits for them to finish without touching anything else. Closing the root closes the
+ * whole tree. Nothing outlives its scope, so rotations cannot leak interrupted threads.
+ *
+ * Each task gets its own thread: a virtual thread when the runtime has them (Java 21+,
+ * unless {@code workers.virtual=false}), otherwise a daemon platform thread. Virtual
+ * threads are looked up reflectively so the code still builds for Java 17.
+ */
+public final class WorkerScope implements AutoCloseable {
+    private static final boolean VIRTUAL = Boolean.parseBoolean(System.getProperty("workers.virtual", "true"));
+    private static final long CLOSE_TIMEOUT_MS = Long.getLong("workers.close.timeout.ms", 1000);
+
+    /**
+     * A forked task that leaves its scope's task set when its thread is done with it,
+     * which for a cancelled task is later than when the cancel returns.
+     */
+    private final class Task<T> extends FutureTask<T> {
+        volatile Thread runner;
+
+        Task(Callable<T> callable) {
+            super(callable);
+        }
+
+        @Override
+        public void run() {
+            runner = Thread.currentThread();
+            try {
+                super.run();
+            } finally {
+                runner = null;
+                tasks.remove(this);
+                synchronized (tasks) {
+                    tasks.notifyAll();
+                }
+            }
+        }
+    }
+
+    private final String name;
+    private final ExecutorService executor;
+    private final WorkerScope parent;
+    private final boolean virtual;
+    private final Set<Task<?>> tasks = ConcurrentHashMap.newKeySet();
+    private final Set<WorkerScope> children = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed = false;
+
+    private WorkerScope(String name, ExecutorService executor, boolean virtual, WorkerScope parent) {
+        this.name = name;
+        this.executor = executor;
+        this.virtual = virtual;
+        this.parent = parent;
+    }
+
+    /**
+     * Opens a root scope with its own executor.
+     */
+    public static WorkerScope open(String name) {
+        if (VIRTUAL) {
+            try {
+                ExecutorService virtualExecutor = (ExecutorService)
+                    Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                return new WorkerScope(name, virtualExecutor, true, null);
+            } catch (ReflectiveOperationException e) {
+                // Older runtime; fall back to platform threads
+            }
+        }
+        AtomicInteger count = new AtomicInteger();
+        ExecutorService platformExecutor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        return new WorkerScope(name, platformExecutor, false, null);
+    }
+
+    /**
+     * Opens a scope whose tasks run on this scope's executor and end when either scope closes.
+     */
+    public WorkerScope child(String childName) {
+        WorkerScope child = new WorkerScope(name + "/" + childName, executor, virtual, this);
+        children.add(child);
+        if (closed) {
+            child.close();
+        }
+        return child;
+    }
+
+    public Future<?> fork(Runnable task) {
+        return fork(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Starts a task in this scope.
+     *
+     * @throws IllegalStateException If the scope is closed
+     */
+    public <T> Future<T> fork(Callable<T> callable) {
+        if (closed) {
+            throw new IllegalStateException("Worker scope " + name + " is closed");
+        }
+        Task<T> task = new Task<>(callable);
+        tasks.add(task);
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * @return True if tasks run on virtual threads
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * @return Tasks of this scope and its children that have not finished
+     */
+    public int activeTasks() {
+        int active = tasks.size();
+        for (WorkerScope child : children) {
+            active += child.activeTasks();
+        }
+        return active;
+    }
+
+    /**
+     * Interrupts every task in this scope and its children, then waits up to
+     * {@code workers.close.timeout.ms} for them to finish. Tasks stuck in calls that
+     * ignore interrupts are reported and left to end on their own.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (WorkerScope child : children) {
+            child.close();
+        }
+        for (Task<?> task : tasks) {
+            task.cancel(true);
+        }
+
+        long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT_MS;
+        synchronized (tasks) {
+            while (othersRunning()) {
+                long wait = deadline - System.currentTimeMillis();
+                if (wait <= 0) {
+                    System.err.println("Worker scope " + name + ": " + tasks.size() + " task(s) still running after close");
+                    break;
+                }
+                try {
+                    tasks.wait(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        if (parent != null) {
+            parent.children.remove(this);
+        } else {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * A task closing its own scope does not wait for itself.
+     */
+    private boolean othersRunning() {
+        Thread current = Thread.currentThread();
+        for (Task<?> task : tasks) {
+            if (task.runner != current) {
+                return true;
+            }
+        }
+        return false;
+    }
+}